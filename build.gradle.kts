@@ -28,6 +28,20 @@ repositories {
 }
 dependencies {
     detektPlugins("io.gitlab.arturbosch.detekt:detekt-formatting:1.17.1")
+    // The IntelliJ test framework itself comes with the platform
+    testImplementation("junit:junit:4.13.2")
+}
+
+// Benchmarks reuse the test fixtures but only run through the benchmark task, never as part of test
+sourceSets {
+    create("benchmark") {
+        compileClasspath += sourceSets.main.get().output + sourceSets.test.get().output
+        runtimeClasspath += sourceSets.main.get().output + sourceSets.test.get().output
+    }
+}
+configurations {
+    named("benchmarkImplementation") { extendsFrom(testImplementation.get()) }
+    named("benchmarkRuntimeOnly") { extendsFrom(testRuntimeOnly.get()) }
 }
 
 // Configure gradle-intellij-plugin plugin.
@@ -104,6 +118,17 @@ tasks {
         changeNotes.set(provider { changelog.getLatest().toHTML() })
     }
 
+    register<Test>("benchmark") {
+        description = "Runs the benchmarks and writes their throughput to build/reports/benchmark."
+        group = "verification"
+        testClassesDirs = sourceSets["benchmark"].output.classesDirs
+        classpath = sourceSets["benchmark"].runtimeClasspath
+        val report = file("$buildDir/reports/benchmark/matching.tsv")
+        systemProperty("astrix.benchmark.report", report.absolutePath)
+        doFirst { delete(report) }
+        outputs.upToDateWhen { false }
+    }
+
     runPluginVerifier {
         ideVersions.set(properties("pluginVerifierIdeVersions").split(',').map(String::trim).filter(String::isNotEmpty))
     }
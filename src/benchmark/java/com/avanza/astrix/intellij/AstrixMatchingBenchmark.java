@@ -0,0 +1,159 @@
+package com.avanza.astrix.intellij;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiExpressionList;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.avanza.astrix.intellij.AstrixContextUtility.findBeanDeclarations;
+import static com.avanza.astrix.intellij.AstrixContextUtility.findBeanUsages;
+import static com.avanza.astrix.intellij.AstrixContextUtility.getQualifier;
+import static com.avanza.astrix.intellij.AstrixContextUtility.isBeanDeclaration;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+
+/**
+ * Throughput and allocation per operation of the matching primitives, run over every retrieval and bean declaration
+ * of a generated project. Each operation must return the expected results and stay within an allocation budget; the
+ * throughput depends on the machine and is written to the report given by the {@code astrix.benchmark.report} system
+ * property. Run by the {@code benchmark} Gradle task, never by {@code test}.
+ */
+public class AstrixMatchingBenchmark extends LightJavaCodeInsightFixtureTestCase {
+    private static final String REPORT_PROPERTY = "astrix.benchmark.report";
+    private static final int WARM_UP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+    private static final int SEARCH_ROUNDS = 3;
+
+    private final List<PsiMethodCallExpression> retrievals = new ArrayList<>();
+    private final List<PsiMethod> beanMethods = new ArrayList<>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        AstrixFixtureProjectGenerator.GeneratedProject generatedProject = new AstrixFixtureProjectGenerator().modules(4)
+                                                                                                             .providersPerModule(5)
+                                                                                                             .beansPerProvider(10)
+                                                                                                             .qualifiersPerBean(2)
+                                                                                                             .asyncPairsPerProvider(3)
+                                                                                                             .callSitesPerModule(500)
+                                                                                                             .generate(myFixture);
+        for (PsiFile consumerFile : generatedProject.getConsumerFiles()) {
+            retrievals.addAll(PsiTreeUtil.findChildrenOfType(consumerFile, PsiMethodCallExpression.class));
+        }
+        for (PsiFile providerFile : generatedProject.getProviderFiles()) {
+            beanMethods.addAll(findBeanDeclarations(providerFile));
+        }
+        assertSize(4 * 500, retrievals);
+        assertSize(4 * 5 * 10 * 3, beanMethods);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        retrievals.clear();
+        beanMethods.clear();
+        super.tearDown();
+    }
+
+    public void testGetTypeParameter() {
+        List<PsiExpressionList> argumentLists = getArgumentLists();
+        measure("getTypeParameter", argumentLists, AstrixContextUtility::getTypeParameter, argumentLists.size(), 256);
+    }
+
+    public void testGetQualifier() {
+        // resolving the qualifier constants of the arguments is not cached, unlike the qualifiers of the declarations
+        List<PsiExpressionList> qualifiedArgumentLists = getArgumentLists().stream()
+                                                                           .filter(argumentList -> argumentList.getExpressionCount() == 2 &&
+                                                                                   !"1000L".equals(argumentList.getExpressions()[1].getText()))
+                                                                           .collect(Collectors.toList());
+        assertNotEmpty(qualifiedArgumentLists);
+        measure("getQualifier(arguments)", qualifiedArgumentLists, argumentList -> getQualifier(argumentList), qualifiedArgumentLists.size(), 1024);
+        measure("getQualifier(method)", beanMethods, method -> getQualifier(method), beanMethods.size() * 2 / 3, 256);
+    }
+
+    public void testIsBeanDeclaration() {
+        measure("isBeanDeclaration", beanMethods, method -> isBeanDeclaration(method) ? method : null, beanMethods.size(), 256);
+    }
+
+    public void testLookupMatching() {
+        Project project = getProject();
+        AstrixBeanLookup beanLookup = AstrixBeanDeclarationCache.getInstance(project).getBeanLookup(retrievals.get(0));
+        assertNotNull(beanLookup);
+        List<PsiExpressionList> argumentLists = getArgumentLists();
+        measure("findBeanDeclarations", argumentLists, argumentList -> beanLookup.findBeanDeclarations(argumentList).isEmpty() ? null : argumentList,
+                argumentLists.size(), 4 * 1024);
+    }
+
+    public void testUsageMatching() {
+        // every bean is retrieved by some consumer, the reactive counterparts included
+        List<PsiMethod> unqualifiedBeanMethods = beanMethods.stream()
+                                                            .filter(method -> getQualifier(method) == null)
+                                                            .collect(Collectors.toList());
+        Function<PsiMethod, Object> search = method -> findBeanUsages(method).findAll().isEmpty() ? null : method;
+        run(unqualifiedBeanMethods, search, 1);
+        measure("findBeanUsages", unqualifiedBeanMethods, search, SEARCH_ROUNDS, unqualifiedBeanMethods.size(), 512 * 1024);
+    }
+
+    private List<PsiExpressionList> getArgumentLists() {
+        List<PsiExpressionList> argumentLists = new ArrayList<>();
+        retrievals.forEach(retrieval -> argumentLists.add(retrieval.getArgumentList()));
+        return argumentLists;
+    }
+
+    private static <T> void measure(String name, List<T> inputs, Function<T, Object> operation, int expectedResults, long bytesPerOperation) {
+        run(inputs, operation, WARM_UP_ROUNDS);
+        measure(name, inputs, operation, ROUNDS, expectedResults, bytesPerOperation);
+    }
+
+    private static <T> void measure(String name, List<T> inputs, Function<T, Object> operation, int rounds, int expectedResults, long bytesPerOperation) {
+        int[] results = new int[1];
+        long start = System.nanoTime();
+        long bytes = AstrixAllocations.measure(() -> results[0] = run(inputs, operation, rounds));
+        long nanos = System.nanoTime() - start;
+
+        long operations = (long) inputs.size() * rounds;
+        assertEquals(name + " results", (long) expectedResults * rounds, results[0]);
+        assertTrue(name + " allocated " + bytes / operations + " bytes per operation", bytes <= operations * bytesPerOperation);
+        report(String.format("%s\t%.0f\t%.1f", name, operations * 1e9 / nanos, (double) bytes / operations));
+    }
+
+    private static <T> int run(List<T> inputs, Function<T, Object> operation, int rounds) {
+        // counting the results keeps the operations from being optimized away
+        int results = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (T input : inputs) {
+                if (operation.apply(input) != null) {
+                    results++;
+                }
+            }
+        }
+        return results;
+    }
+
+    private static void report(String line) {
+        String report = System.getProperty(REPORT_PROPERTY);
+        if (report == null) {
+            return;
+        }
+        Path path = Paths.get(report);
+        try {
+            Files.createDirectories(path.getParent());
+            Files.write(path, List.of(line), UTF_8, CREATE, APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
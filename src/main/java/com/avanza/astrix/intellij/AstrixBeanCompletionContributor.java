@@ -0,0 +1,113 @@
+package com.avanza.astrix.intellij;
+
+import com.intellij.codeInsight.completion.CompletionContributor;
+import com.intellij.codeInsight.completion.CompletionParameters;
+import com.intellij.codeInsight.completion.CompletionResultSet;
+import com.intellij.codeInsight.completion.CompletionType;
+import com.intellij.codeInsight.completion.InsertionContext;
+import com.intellij.codeInsight.lookup.LookupElement;
+import com.intellij.codeInsight.lookup.LookupElementBuilder;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiExpressionList;
+import com.intellij.psi.PsiLiteralExpression;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.codeStyle.JavaCodeStyleManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+import org.jetbrains.annotations.NotNull;
+
+import static com.avanza.astrix.intellij.AstrixContextUtility.BEAN_RETRIEVAL_METHOD_NAMES;
+import static com.avanza.astrix.intellij.AstrixContextUtility.getTypeParameter;
+import static com.avanza.astrix.intellij.AstrixContextUtility.isAstrixBeanRetriever;
+
+/**
+ * Completes the arguments of bean retrievals: the first argument with class literals of the beans declared in the
+ * runtime scope of the module, the second with the qualifiers declared for the requested bean type. The items are
+ * added alongside the regular completion results.
+ */
+public class AstrixBeanCompletionContributor extends CompletionContributor {
+    private static final String CLASS_LITERAL_SUFFIX = ".class";
+
+    @Override
+    public void fillCompletionVariants(@NotNull CompletionParameters parameters, @NotNull CompletionResultSet result) {
+        if (parameters.getCompletionType() != CompletionType.BASIC) {
+            return;
+        }
+        PsiElement position = parameters.getPosition();
+        PsiExpression argument = PsiTreeUtil.getParentOfType(position, PsiExpression.class);
+        while (argument != null && !(argument.getParent() instanceof PsiExpressionList)) {
+            argument = PsiTreeUtil.getParentOfType(argument, PsiExpression.class);
+        }
+        PsiExpressionList argumentList = argument == null ? null : (PsiExpressionList) argument.getParent();
+        if (argumentList == null || !(argumentList.getParent() instanceof PsiMethodCallExpression)) {
+            return;
+        }
+        PsiMethodCallExpression psiMethodCallExpression = (PsiMethodCallExpression) argumentList.getParent();
+        if (!BEAN_RETRIEVAL_METHOD_NAMES.contains(psiMethodCallExpression.getMethodExpression().getReferenceName()) ||
+                !isAstrixBeanRetriever(psiMethodCallExpression.resolveMethod())) {
+            return;
+        }
+
+        AstrixBeanLookup beanLookup = AstrixBeanDeclarationCache.getInstance(position.getProject()).getBeanLookup(parameters.getOriginalFile());
+        if (beanLookup == null) {
+            return;
+        }
+        PsiExpression[] expressions = argumentList.getExpressions();
+        if (expressions.length > 0 && expressions[0] == argument && !(argument instanceof PsiLiteralExpression)) {
+            addBeanTypes(beanLookup, result);
+        } else if (expressions.length > 1 && expressions[1] == argument && argument instanceof PsiLiteralExpression) {
+            addQualifiers(beanLookup, argumentList, (PsiLiteralExpression) argument, parameters.getOffset(), result);
+        }
+    }
+
+    private static void addBeanTypes(AstrixBeanLookup beanLookup, CompletionResultSet result) {
+        for (String beanTypeName : beanLookup.findBeanTypeNamesByInitial(result.getPrefixMatcher().getPrefix())) {
+            String shortName = StringUtil.getShortName(beanTypeName);
+            result.addElement(LookupElementBuilder.create(beanTypeName, shortName + CLASS_LITERAL_SUFFIX)
+                                                  .withLookupString(shortName)
+                                                  .withTailText(" (" + StringUtil.getPackageName(beanTypeName) + ")", true)
+                                                  .withIcon(Icons.Gutter.asterisk)
+                                                  .withInsertHandler(AstrixBeanCompletionContributor::insertClassLiteral));
+        }
+    }
+
+    private static void addQualifiers(AstrixBeanLookup beanLookup,
+                                      PsiExpressionList argumentList,
+                                      PsiLiteralExpression literal,
+                                      int offset,
+                                      CompletionResultSet result) {
+        PsiClass beanClass = PsiUtil.resolveClassInClassTypeOnly(getTypeParameter(argumentList));
+        String beanTypeName = beanClass == null ? null : beanClass.getQualifiedName();
+        if (beanTypeName == null) {
+            return;
+        }
+        CompletionResultSet qualifierResult = result.withPrefixMatcher(getLiteralPrefix(literal, offset));
+        for (String qualifier : beanLookup.getQualifiers(beanTypeName)) {
+            qualifierResult.addElement(LookupElementBuilder.create(qualifier).withTypeText(beanClass.getName()));
+        }
+    }
+
+    private static String getLiteralPrefix(PsiLiteralExpression literal, int offset) {
+        int start = literal.getTextRange().getStartOffset() + 1;
+        String text = literal.getText();
+        return offset <= start ? "" : text.substring(1, Math.min(offset - start + 1, text.length()));
+    }
+
+    private static void insertClassLiteral(@NotNull InsertionContext context, @NotNull LookupElement item) {
+        Document document = context.getDocument();
+        String text = (String) item.getObject();
+        if (!StringUtil.startsWith(document.getCharsSequence(), context.getTailOffset(), CLASS_LITERAL_SUFFIX)) {
+            text += CLASS_LITERAL_SUFFIX;
+        }
+        document.replaceString(context.getStartOffset(), context.getTailOffset(), text);
+        int endOffset = context.getStartOffset() + text.length();
+        context.getEditor().getCaretModel().moveToOffset(endOffset);
+        PsiDocumentManager.getInstance(context.getProject()).commitDocument(document);
+        JavaCodeStyleManager.getInstance(context.getProject()).shortenClassReferences(context.getFile(), context.getStartOffset(), endOffset);
+    }
+}
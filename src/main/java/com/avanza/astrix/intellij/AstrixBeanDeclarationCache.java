@@ -0,0 +1,110 @@
+package com.avanza.astrix.intellij;
+
+import com.avanza.astrix.intellij.AstrixScopeRegistry.ScopeFingerprint;
+import com.avanza.astrix.intellij.diagnostics.AstrixMetrics;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtil;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiExpressionList;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.util.containers.ConcurrentFactoryMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+
+/**
+ * Bean declaration lookup per module runtime scope, shared by the line markers and the inspection.
+ * <p>
+ * The lookup is built once per {@link ScopeFingerprint} from the {@link AstrixBeanDeclarationTable} and dropped when the
+ * table or the project roots change. Edits outside provider classes, their bean types and qualifier constants leave it intact.
+ */
+public class AstrixBeanDeclarationCache implements Disposable {
+    private final Project project;
+    private final AstrixBeanDeclarationTable declarationTable;
+
+    public AstrixBeanDeclarationCache(Project project) {
+        this.project = project;
+        this.declarationTable = new AstrixBeanDeclarationTable(project);
+        AstrixBeanDeclarationChangeListener changeListener = new AstrixBeanDeclarationChangeListener(project, declarationTable);
+        PsiManager.getInstance(project).addPsiTreeChangeListener(changeListener, this);
+        project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, changeListener);
+    }
+
+    public static AstrixBeanDeclarationCache getInstance(Project project) {
+        return project.getService(AstrixBeanDeclarationCache.class);
+    }
+
+    public Collection<AstrixBeanDescriptor> findBeanDeclarations(@NotNull PsiExpressionList psiExpressionList) {
+        AstrixBeanLookup beanLookup = getBeanLookup(psiExpressionList);
+        return beanLookup == null ? emptyList() : beanLookup.findBeanDeclarations(psiExpressionList);
+    }
+
+    @Nullable
+    public AstrixBeanLookup getBeanLookup(PsiElement element) {
+        PsiFile file = element.getContainingFile();
+        VirtualFile virtualFile;
+        Module module;
+        if (file == null || (virtualFile = file.getVirtualFile()) == null || (module = ModuleUtil.findModuleForFile(virtualFile, project)) == null) {
+            return null;
+        }
+        return getBeanLookup(module, ModuleRootManager.getInstance(module).getFileIndex().isInTestSourceContent(virtualFile));
+    }
+
+    public AstrixBeanLookup getBeanLookup(@NotNull Module module, boolean includeTests) {
+        ScopeFingerprint fingerprint = AstrixScopeRegistry.getInstance(project).getFingerprint(module, includeTests);
+        AstrixMetrics.getInstance().cacheLookup(AstrixMetrics.BEAN_LOOKUP_CACHE);
+        return getBeanLookups().get(fingerprint);
+    }
+
+    /**
+     * The methods declared in the file that provider classes elsewhere inherit as bean declarations.
+     */
+    Set<AstrixBeanDescriptor> getInheritedBeanDeclarations(@NotNull PsiFile file) {
+        VirtualFile virtualFile = file.getVirtualFile();
+        if (virtualFile == null) {
+            return emptySet();
+        }
+        declarationTable.update();
+        return declarationTable.getInheritedBeanDeclarations(virtualFile);
+    }
+
+    AstrixBeanDeclarationTable getDeclarationTable() {
+        return declarationTable;
+    }
+
+    AstrixBeanSuggestions getBeanSuggestions() {
+        declarationTable.update();
+        return CachedValuesManager.getManager(project).getCachedValue(project, () -> CachedValueProvider.Result.create(
+                AstrixBeanSuggestions.create(declarationTable, project), declarationTable, ProjectRootModificationTracker.getInstance(project)));
+    }
+
+    private Map<ScopeFingerprint, AstrixBeanLookup> getBeanLookups() {
+        declarationTable.update();
+        return CachedValuesManager.getManager(project).getCachedValue(project, () -> {
+            Map<ScopeFingerprint, AstrixBeanLookup> beanLookups = ConcurrentFactoryMap.createMap(fingerprint -> {
+                AstrixMetrics.getInstance().cacheMiss(AstrixMetrics.BEAN_LOOKUP_CACHE);
+                return AstrixBeanLookup.create(declarationTable, fingerprint.createScope(), project);
+            });
+            return CachedValueProvider.Result.create(beanLookups, declarationTable, ProjectRootModificationTracker.getInstance(project));
+        });
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
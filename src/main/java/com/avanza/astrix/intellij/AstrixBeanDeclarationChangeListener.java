@@ -0,0 +1,130 @@
+package com.avanza.astrix.intellij;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.vfs.JarFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiTreeChangeAdapter;
+import com.intellij.psi.PsiTreeChangeEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Forwards PSI and VFS changes to the {@link AstrixBeanDeclarationTable}.
+ * <p>
+ * Java source changes only queue the changed file, and a created or copied directory queues the Java files in it.
+ * Moving, renaming or deleting a directory under a source root, or changing a jar, invalidates the whole table, as it
+ * may change the packages of provider classes and bean supertypes the table has never seen. Directory changes are
+ * taken from the VFS only, their PSI events are ignored.
+ */
+class AstrixBeanDeclarationChangeListener extends PsiTreeChangeAdapter implements BulkFileListener {
+    private final Project project;
+    private final AstrixBeanDeclarationTable declarationTable;
+
+    AstrixBeanDeclarationChangeListener(Project project, AstrixBeanDeclarationTable declarationTable) {
+        this.project = project;
+        this.declarationTable = declarationTable;
+    }
+
+    @Override
+    public void childAdded(@NotNull PsiTreeChangeEvent event) {
+        psiChanged(event);
+    }
+
+    @Override
+    public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+        psiChanged(event);
+    }
+
+    @Override
+    public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+        psiChanged(event);
+    }
+
+    @Override
+    public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+        psiChanged(event);
+    }
+
+    @Override
+    public void childMoved(@NotNull PsiTreeChangeEvent event) {
+        psiChanged(event);
+    }
+
+    @Override
+    public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
+        psiChanged(event);
+    }
+
+    @Override
+    public void before(@NotNull List<? extends VFileEvent> events) {
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        for (VFileEvent event : events) {
+            VirtualFile file = event.getFile();
+            if (file != null && file.isDirectory() && isMoveRenameOrDelete(event) && fileIndex.isInSourceContent(file)) {
+                declarationTable.invalidate();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void after(@NotNull List<? extends VFileEvent> events) {
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        for (VFileEvent event : events) {
+            VirtualFile file = event instanceof VFileCopyEvent ? ((VFileCopyEvent) event).findCreatedFile() : event.getFile();
+            if (file == null) {
+                continue;
+            }
+            if (file.getFileSystem() instanceof JarFileSystem || "jar".equals(file.getExtension())) {
+                declarationTable.invalidate();
+            } else if (file.isDirectory()) {
+                if ((event instanceof VFileCreateEvent || event instanceof VFileCopyEvent) && file.isValid() && fileIndex.isInSourceContent(file)) {
+                    queueJavaFiles(file);
+                }
+            } else if (JavaFileType.DEFAULT_EXTENSION.equals(file.getExtension())) {
+                declarationTable.fileChanged(file);
+            }
+        }
+    }
+
+    private static boolean isMoveRenameOrDelete(VFileEvent event) {
+        return event instanceof VFileMoveEvent ||
+                event instanceof VFileDeleteEvent ||
+                event instanceof VFilePropertyChangeEvent && ((VFilePropertyChangeEvent) event).isRename();
+    }
+
+    private void queueJavaFiles(VirtualFile directory) {
+        VfsUtilCore.iterateChildrenRecursively(directory, null, file -> {
+            if (!file.isDirectory() && JavaFileType.DEFAULT_EXTENSION.equals(file.getExtension())) {
+                declarationTable.fileChanged(file);
+            }
+            return true;
+        });
+    }
+
+    private void psiChanged(PsiTreeChangeEvent event) {
+        PsiFile file = event.getFile();
+        if (file == null) {
+            PsiElement element = event.getChild() != null ? event.getChild() : event.getElement();
+            file = element instanceof PsiFile ? (PsiFile) element : null;
+        }
+        VirtualFile virtualFile = file instanceof PsiJavaFile ? file.getVirtualFile() : null;
+        if (virtualFile != null) {
+            declarationTable.fileChanged(virtualFile);
+        }
+    }
+}
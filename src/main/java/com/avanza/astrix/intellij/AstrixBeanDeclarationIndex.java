@@ -0,0 +1,137 @@
+package com.avanza.astrix.intellij;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.psi.PsiAnnotation;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassType;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifierList;
+import com.intellij.psi.PsiModifierListOwner;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.DefaultFileTypeSpecificInputFilter;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.indexing.ScalarIndexExtension;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static com.avanza.astrix.intellij.AstrixContextUtility.API_PROVIDER_FQN;
+import static com.avanza.astrix.intellij.AstrixContextUtility.LIBRARY_FQN;
+import static com.avanza.astrix.intellij.AstrixContextUtility.SERVICE_FQN;
+import static com.intellij.openapi.util.text.StringUtil.contains;
+import static com.intellij.openapi.util.text.StringUtil.getShortName;
+import static java.util.Collections.emptyMap;
+
+/**
+ * Indexes Java sources by the simple name of the bean types declared in {@code @AstrixApiProvider} classes.
+ * <p>
+ * References cannot be resolved while indexing, so the key is the simple name of the erased return type.
+ * Qualifiers and the exact type are verified against PSI when the index is queried. Provider classes with supertypes
+ * are also indexed under {@link #INHERITING_PROVIDER_KEY}, since their inherited declarations are not known here.
+ * Compiled provider classes are covered by {@link AstrixLibraryBeanIndex}.
+ */
+public class AstrixBeanDeclarationIndex extends ScalarIndexExtension<String> {
+    public static final ID<String, Void> NAME = ID.create("com.avanza.astrix.intellij.AstrixBeanDeclarationIndex");
+
+    /**
+     * Key of the files with provider classes extending other types, which may inherit bean declarations. It is not a
+     * Java identifier, so it never collides with a bean type name, but it is among the keys of the index: whoever
+     * enumerates them must not take every key for a bean type name.
+     */
+    static final String INHERITING_PROVIDER_KEY = "<inheriting provider>";
+
+    private static final String API_PROVIDER_NAME = getShortName(API_PROVIDER_FQN);
+    private static final String SERVICE_NAME = getShortName(SERVICE_FQN);
+    private static final String LIBRARY_NAME = getShortName(LIBRARY_FQN);
+
+    @NotNull
+    @Override
+    public ID<String, Void> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, Void, FileContent> getIndexer() {
+        return inputData -> {
+            if (!contains(inputData.getContentAsText(), API_PROVIDER_NAME)) {
+                return emptyMap();
+            }
+            PsiFile psiFile = inputData.getPsiFile();
+            if (!(psiFile instanceof PsiJavaFile)) {
+                return emptyMap();
+            }
+
+            Map<String, Void> result = new HashMap<>();
+            for (PsiClass psiClass : PsiTreeUtil.findChildrenOfType(psiFile, PsiClass.class)) {
+                if (hasAnnotation(psiClass, API_PROVIDER_NAME)) {
+                    if (hasSupertypes(psiClass)) {
+                        result.put(INHERITING_PROVIDER_KEY, null);
+                    }
+                    for (PsiMethod method : psiClass.getMethods()) {
+                        String beanTypeName;
+                        if ((hasAnnotation(method, SERVICE_NAME) || hasAnnotation(method, LIBRARY_NAME)) && (beanTypeName = getBeanTypeName(method)) != null) {
+                            result.put(beanTypeName, null);
+                        }
+                    }
+                }
+            }
+            return result;
+        };
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @Override
+    public int getVersion() {
+        return 4;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    /**
+     * The simple name of the erased return type, e.g. {@code MyService} for {@code com.example.MyService<T>}.
+     */
+    @Nullable
+    static String getBeanTypeName(PsiMethod method) {
+        PsiType returnType = method.getReturnType();
+        return returnType instanceof PsiClassType ? ((PsiClassType) returnType).getClassName() : null;
+    }
+
+    private static boolean hasSupertypes(PsiClass psiClass) {
+        return Stream.of(psiClass.getExtendsList(), psiClass.getImplementsList())
+                     .anyMatch(referenceList -> referenceList != null && referenceList.getReferenceElements().length > 0);
+    }
+
+    private static boolean hasAnnotation(PsiModifierListOwner owner, String shortName) {
+        PsiModifierList modifierList = owner.getModifierList();
+        return modifierList != null && Arrays.stream(modifierList.getAnnotations())
+                                             .map(PsiAnnotation::getNameReferenceElement)
+                                             .anyMatch(reference -> reference != null && shortName.equals(reference.getReferenceName()));
+    }
+}
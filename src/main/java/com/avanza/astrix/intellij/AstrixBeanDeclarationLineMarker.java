@@ -1,27 +1,32 @@
 package com.avanza.astrix.intellij;
 
+import com.avanza.astrix.intellij.diagnostics.AstrixMetrics;
 import com.intellij.codeInsight.daemon.LineMarkerInfo;
 import com.intellij.codeInsight.daemon.LineMarkerProviderDescriptor;
 import com.intellij.codeInsight.daemon.MergeableLineMarkerInfo;
 import com.intellij.codeInsight.navigation.NavigationGutterIconBuilder;
-import com.intellij.concurrency.JobLauncher;
 import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.progress.ProgressIndicator;
-import com.intellij.openapi.progress.ProgressIndicatorProvider;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiIdentifier;
 import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.SmartPsiElementPointer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 import static com.avanza.astrix.intellij.AstrixContextUtility.findBeanUsages;
-import static com.avanza.astrix.intellij.AstrixContextUtility.isBeanDeclaration;
 import static com.intellij.openapi.util.NotNullLazyValue.lazy;
+import static java.util.Collections.emptyList;
 import static java.util.stream.Collectors.toList;
 
 public class AstrixBeanDeclarationLineMarker extends LineMarkerProviderDescriptor {
@@ -39,16 +44,11 @@ public class AstrixBeanDeclarationLineMarker extends LineMarkerProviderDescripto
         ApplicationManager.getApplication().assertReadAccessAllowed();
 
         if (beanOption.isEnabled()) {
-            final Object lock = new Object();
-            ProgressIndicator indicator = ProgressIndicatorProvider.getGlobalProgressIndicator();
-            JobLauncher.getInstance().invokeConcurrentlyUnderProgress(elements, indicator, element -> {
-                createLineMarkerInfo(element).ifPresent(info -> {
-                    synchronized (lock) {
-                        result.add(info);
-                    }
-                });
-                return true;
-            });
+            try (AstrixMetrics.Span span = AstrixMetrics.getInstance().start(AstrixMetrics.DECLARATION_LINE_MARKERS)) {
+                int markers = result.size();
+                AstrixLineMarkers.collectConcurrently(elements, this::createLineMarkerInfo, result);
+                span.setSize(result.size() - markers);
+            }
         }
     }
 
@@ -57,18 +57,49 @@ public class AstrixBeanDeclarationLineMarker extends LineMarkerProviderDescripto
         if (element instanceof PsiIdentifier && (parent = element.getParent()) instanceof PsiMethod) {
             PsiMethod method = (PsiMethod) parent;
 
-            if (isBeanDeclaration(method)) {
-                return Optional.of(NavigationGutterIconBuilder.create(icon)
+            if (AstrixFileAnalysis.of(element.getContainingFile()).isBeanDeclaration(method)) {
+                List<SmartPsiElementPointer<PsiMethodCallExpression>> usages = AstrixBeanUsages.getInstance(method.getProject()).getUsages(method);
+                return Optional.of(NavigationGutterIconBuilder.create(usages != null && usages.isEmpty() ? Icons.Gutter.asteriskUnused : icon)
+                                                              .setTooltipText(getTooltipText(usages))
                                                               .setEmptyPopupText("No astrix bean usages found.")
-                                                              .setTargets(lazy(() -> findBeanUsages(method).stream()
-                                                                                                           .flatMap(query -> query.findAll().stream())
-                                                                                                           .collect(toList())))
+                                                              .setTargets(lazy(() -> getTargets(method, usages)))
                                                               .createLineMarkerInfo(element));
             }
         }
         return Optional.empty();
     }
 
+    private static List<PsiMethodCallExpression> getTargets(PsiMethod method, @Nullable List<SmartPsiElementPointer<PsiMethodCallExpression>> usages) {
+        if (usages != null) {
+            return usages.stream().map(SmartPsiElementPointer::getElement).filter(Objects::nonNull).collect(toList());
+        }
+        if (!ApplicationManager.getApplication().isDispatchThread()) {
+            return new ArrayList<>(findBeanUsages(method).findAll());
+        }
+        // not searched in the background yet, so search under a cancellable progress rather than freezing the editor
+        try {
+            return ProgressManager.getInstance().runProcessWithProgressSynchronously(
+                    () -> ReadAction.compute(() -> new ArrayList<>(findBeanUsages(method).findAll())),
+                    "Searching for Astrix Bean Usages", true, method.getProject());
+        } catch (ProcessCanceledException e) {
+            return emptyList();
+        }
+    }
+
+    private static String getTooltipText(@Nullable List<SmartPsiElementPointer<PsiMethodCallExpression>> usages) {
+        if (usages == null) {
+            return "Searching for astrix bean usages...";
+        }
+        switch (usages.size()) {
+            case 0:
+                return "No consumers of this astrix bean";
+            case 1:
+                return "Retrieved in 1 place";
+            default:
+                return "Retrieved in " + usages.size() + " places";
+        }
+    }
+
     @Nullable
     @Override
     public String getName() {
@@ -0,0 +1,326 @@
+package com.avanza.astrix.intellij;
+
+import com.avanza.astrix.intellij.settings.AstrixSettings;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.components.StoragePathMacros;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassObjectAccessExpression;
+import com.intellij.psi.PsiClassOwner;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiImportList;
+import com.intellij.psi.PsiImportStatement;
+import com.intellij.psi.PsiJavaCodeReferenceElement;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiLiteralExpression;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.xmlb.annotations.Attribute;
+import com.intellij.util.xmlb.annotations.Tag;
+import com.intellij.util.xmlb.annotations.XCollection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static com.avanza.astrix.intellij.AstrixContextUtility.BEAN_RETRIEVAL_METHOD_NAMES;
+import static com.avanza.astrix.intellij.AstrixContextUtility.getLibraryBeanDeclarations;
+import static com.intellij.psi.util.PsiUtil.skipParenthesizedExprDown;
+import static java.util.stream.Collectors.groupingBy;
+
+/**
+ * The bean declarations of the last smart session, persisted in the project cache so that bean retrievals can be
+ * matched while indexing.
+ * <p>
+ * Matching is purely syntactic: the requested type is looked up through the imports of the file and only string
+ * literal qualifiers are understood. Retrievals that cannot be matched that way, or whose type is not in the snapshot,
+ * are left alone.
+ * <p>
+ * The snapshot is prepared in the background whenever the {@link AstrixBeanDeclarationTable} changes, so saving the
+ * project only writes the prepared state.
+ */
+@State(name = "IntelliAstrixBeanDeclarations", storages = @Storage(StoragePathMacros.CACHE_FILE))
+public class AstrixBeanDeclarationSnapshot implements PersistentStateComponent<AstrixBeanDeclarationSnapshot.SnapshotState>, Disposable {
+    private static final String ASTRIX_PACKAGE_PREFIX = "com.avanza.astrix.";
+
+    private final Project project;
+    private volatile SnapshotState state = new SnapshotState();
+    private volatile Map<String, List<Declaration>> declarationsByType;
+
+    public AstrixBeanDeclarationSnapshot(Project project) {
+        this.project = project;
+    }
+
+    public static AstrixBeanDeclarationSnapshot getInstance(Project project) {
+        return project.getService(AstrixBeanDeclarationSnapshot.class);
+    }
+
+    void declarationsChanged() {
+        ReadAction.nonBlocking(this::createState)
+                  .inSmartMode(project)
+                  .coalesceBy(this)
+                  .expireWith(this)
+                  .submit(AppExecutorUtil.getAppExecutorService())
+                  .onSuccess(current -> {
+                      if (current != null) {
+                          setState(current);
+                      }
+                  });
+    }
+
+    @NotNull
+    @Override
+    public SnapshotState getState() {
+        return state;
+    }
+
+    @Override
+    public void loadState(@NotNull SnapshotState state) {
+        setState(state);
+    }
+
+    /**
+     * The declarations matching a bean retrieval, or {@code null} if the call is not recognized as one or its type is not
+     * in the snapshot. Empty only if the type is known but not with the qualifier.
+     */
+    @Nullable
+    public List<Declaration> findDeclarations(@NotNull PsiMethodCallExpression psiMethodCallExpression) {
+        if (!BEAN_RETRIEVAL_METHOD_NAMES.contains(psiMethodCallExpression.getMethodExpression().getReferenceName())) {
+            return null;
+        }
+        PsiFile file = psiMethodCallExpression.getContainingFile();
+        PsiExpression[] expressions = psiMethodCallExpression.getArgumentList().getExpressions();
+        if (!(file instanceof PsiJavaFile) || !importsAstrix((PsiJavaFile) file) || expressions.length < 1 || expressions.length > 2) {
+            return null;
+        }
+
+        PsiExpression typeExpression = skipParenthesizedExprDown(expressions[0]);
+        PsiJavaCodeReferenceElement typeReference = typeExpression instanceof PsiClassObjectAccessExpression
+                ? ((PsiClassObjectAccessExpression) typeExpression).getOperand().getInnermostComponentReferenceElement()
+                : null;
+        if (typeReference == null) {
+            return null;
+        }
+        String qualifier = null;
+        if (expressions.length == 2) {
+            PsiExpression qualifierExpression = skipParenthesizedExprDown(expressions[1]);
+            Object value = qualifierExpression instanceof PsiLiteralExpression ? ((PsiLiteralExpression) qualifierExpression).getValue() : null;
+            if (!(value instanceof String)) {
+                return null;
+            }
+            qualifier = (String) value;
+        }
+
+        Map<String, List<Declaration>> declarationsByType = getDeclarationsByType();
+        if (declarationsByType.isEmpty()) {
+            return null;
+        }
+        boolean knownType = false;
+        List<Declaration> declarations = new ArrayList<>();
+        for (String typeName : getCandidateTypeNames((PsiJavaFile) file, StringUtil.replace(typeReference.getText(), " ", ""))) {
+            List<Declaration> typeDeclarations = declarationsByType.get(typeName);
+            if (typeDeclarations == null) {
+                continue;
+            }
+            knownType = true;
+            for (Declaration declaration : typeDeclarations) {
+                if (Objects.equals(declaration.qualifier, qualifier)) {
+                    declarations.add(declaration);
+                }
+            }
+        }
+        return knownType ? declarations : null;
+    }
+
+    /**
+     * The provider method of a declaration in the project sources, found without using any index.
+     */
+    @Nullable
+    public PsiMethod resolve(@NotNull Declaration declaration) {
+        VirtualFile file = declaration.fileUrl == null ? null : VirtualFileManager.getInstance().findFileByUrl(declaration.fileUrl);
+        PsiFile psiFile = file == null || !file.isValid() ? null : PsiManager.getInstance(project).findFile(file);
+        if (!(psiFile instanceof PsiClassOwner)) {
+            return null;
+        }
+        List<PsiClass> classes = new ArrayList<>(List.of(((PsiClassOwner) psiFile).getClasses()));
+        for (int i = 0; i < classes.size(); i++) {
+            PsiClass psiClass = classes.get(i);
+            if (declaration.providerName.equals(psiClass.getQualifiedName())) {
+                PsiMethod[] methods = psiClass.findMethodsByName(declaration.methodName, false);
+                return methods.length == 0 ? null : methods[0];
+            }
+            classes.addAll(List.of(psiClass.getInnerClasses()));
+        }
+        return null;
+    }
+
+    private Set<String> getCandidateTypeNames(PsiJavaFile file, String typeText) {
+        int separator = typeText.indexOf('.');
+        String firstName = separator < 0 ? typeText : typeText.substring(0, separator);
+        String remainder = separator < 0 ? "" : typeText.substring(separator);
+
+        Set<String> typeNames = new LinkedHashSet<>();
+        if (separator >= 0) {
+            typeNames.add(typeText);
+        }
+        PsiImportList importList = file.getImportList();
+        if (importList != null) {
+            for (PsiImportStatement importStatement : importList.getImportStatements()) {
+                String importedName = importStatement.getQualifiedName();
+                if (importedName == null) {
+                    continue;
+                }
+                if (importStatement.isOnDemand()) {
+                    typeNames.add(importedName + "." + typeText);
+                } else if (StringUtil.getShortName(importedName).equals(firstName)) {
+                    typeNames.add(importedName + remainder);
+                }
+            }
+        }
+        String packageName = file.getPackageName();
+        typeNames.add(packageName.isEmpty() ? typeText : packageName + "." + typeText);
+
+        Set<String> synchronousTypeNames = new LinkedHashSet<>();
+        for (String reactivePostfix : AstrixSettings.getInstance(project).getReactivePostfixes()) {
+            for (String typeName : typeNames) {
+                if (typeName.endsWith(reactivePostfix) && typeName.length() > reactivePostfix.length()) {
+                    synchronousTypeNames.add(StringUtil.trimEnd(typeName, reactivePostfix));
+                }
+            }
+        }
+        typeNames.addAll(synchronousTypeNames);
+        return typeNames;
+    }
+
+    private static boolean importsAstrix(PsiJavaFile file) {
+        if (file.getPackageName().startsWith(ASTRIX_PACKAGE_PREFIX)) {
+            return true;
+        }
+        PsiImportList importList = file.getImportList();
+        if (importList == null) {
+            return false;
+        }
+        for (PsiImportStatement importStatement : importList.getImportStatements()) {
+            String importedName = importStatement.getQualifiedName();
+            if (importedName != null && importedName.startsWith(ASTRIX_PACKAGE_PREFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Map<String, List<Declaration>> getDeclarationsByType() {
+        Map<String, List<Declaration>> declarationsByType = this.declarationsByType;
+        if (declarationsByType == null) {
+            declarationsByType = state.declarations.stream().collect(groupingBy(declaration -> declaration.beanTypeName));
+            this.declarationsByType = declarationsByType;
+        }
+        return declarationsByType;
+    }
+
+    private void setState(SnapshotState state) {
+        this.state = state;
+        this.declarationsByType = null;
+    }
+
+    @Nullable
+    private SnapshotState createState() {
+        AstrixBeanDeclarationTable declarationTable = AstrixBeanDeclarationCache.getInstance(project).getDeclarationTable();
+        if (DumbService.isDumb(project) || !declarationTable.isInitialized()) {
+            return null;
+        }
+        try {
+            SnapshotState state = new SnapshotState();
+            declarationTable.getBeanDeclarationsByFile().forEach((file, beanDeclarations) -> {
+                for (AstrixBeanDeclarationTable.BeanDeclaration beanDeclaration : beanDeclarations) {
+                    AstrixBeanDescriptor descriptor = beanDeclaration.getDescriptor();
+                    // inherited declarations live in the file of the supertype
+                    VirtualFile declaringFile = beanDeclaration.getDeclaringFile();
+                    String fileUrl = (declaringFile == null ? file : declaringFile).getUrl();
+                    for (String beanTypeName : beanDeclaration.getBeanTypeNames()) {
+                        state.declarations.add(new Declaration(beanTypeName,
+                                                               descriptor.getQualifier(),
+                                                               descriptor.getProviderName(),
+                                                               descriptor.getMethodName(),
+                                                               descriptor.isService(),
+                                                               fileUrl));
+                    }
+                }
+            });
+            for (AstrixBeanDescriptor descriptor : getLibraryBeanDeclarations(GlobalSearchScope.allScope(project), project)) {
+                state.declarations.add(new Declaration(descriptor.getBeanTypeName(),
+                                                       descriptor.getQualifier(),
+                                                       descriptor.getProviderName(),
+                                                       descriptor.getMethodName(),
+                                                       descriptor.isService(),
+                                                       null));
+            }
+            return state;
+        } catch (IndexNotReadyException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    public static class SnapshotState {
+        @XCollection
+        public List<Declaration> declarations = new ArrayList<>();
+    }
+
+    @Tag("declaration")
+    public static class Declaration {
+        @Attribute
+        public String beanTypeName;
+        @Attribute
+        public String qualifier;
+        @Attribute
+        public String providerName;
+        @Attribute
+        public String methodName;
+        @Attribute
+        public boolean service;
+        @Attribute
+        public String fileUrl;
+
+        public Declaration() {
+        }
+
+        Declaration(String beanTypeName, @Nullable String qualifier, String providerName, String methodName, boolean service, @Nullable String fileUrl) {
+            this.beanTypeName = beanTypeName;
+            this.qualifier = qualifier;
+            this.providerName = providerName;
+            this.methodName = methodName;
+            this.service = service;
+            this.fileUrl = fileUrl;
+        }
+
+        public boolean isService() {
+            return service;
+        }
+
+        public String getBeanTypeName() {
+            return beanTypeName;
+        }
+    }
+}
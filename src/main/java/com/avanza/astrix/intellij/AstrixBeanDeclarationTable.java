@@ -0,0 +1,446 @@
+package com.avanza.astrix.intellij;
+
+import com.avanza.astrix.intellij.diagnostics.AstrixMetrics;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiAnnotation;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassType;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiReferenceExpression;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.InheritanceUtil;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+import com.intellij.psi.util.PsiUtilCore;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.avanza.astrix.intellij.AstrixContextUtility.QUALIFIER_FQN;
+import static com.avanza.astrix.intellij.AstrixContextUtility.findApiProviders;
+import static com.avanza.astrix.intellij.AstrixContextUtility.findBeanDeclarations;
+import static com.avanza.astrix.intellij.AstrixContextUtility.getBeanDeclarationFiles;
+import static com.avanza.astrix.intellij.AstrixContextUtility.getBeanTypeClasses;
+import static com.intellij.psi.CommonClassNames.JAVA_LANG_OBJECT;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+
+/**
+ * Bean declarations of all provider classes in the project sources, kept per file.
+ * <p>
+ * Changed files are only queued by {@link #fileChanged(VirtualFile)}. On the next {@link #update()} just those files,
+ * and the provider files depending on them for provider supertypes, bean supertypes or qualifier constants, are
+ * derived again. Provider files with bean types that did not resolve are derived again when a changed file declares a
+ * class of the same short name. The modification count only moves when a provider file actually yields different
+ * declarations.
+ * <p>
+ * Readers never wait for an update: an update derives a new {@link State} from a copy of the current one and then
+ * publishes it, so readers always see a complete state. Updates are still serialized among themselves, so concurrent
+ * callers do not derive the same files twice.
+ */
+class AstrixBeanDeclarationTable implements ModificationTracker {
+    private final Project project;
+    private final Object updateLock = new Object();
+    private final Set<VirtualFile> changedFiles = ConcurrentHashMap.newKeySet();
+    private final AtomicLong invalidationCount = new AtomicLong();
+    private volatile State state = new State();
+
+    AstrixBeanDeclarationTable(Project project) {
+        this.project = project;
+    }
+
+    void fileChanged(VirtualFile file) {
+        changedFiles.add(file);
+    }
+
+    void invalidate() {
+        invalidationCount.incrementAndGet();
+    }
+
+    @Override
+    public long getModificationCount() {
+        return state.modificationCount;
+    }
+
+    void update() {
+        long currentRootsModificationCount = ProjectRootModificationTracker.getInstance(project).getModificationCount();
+        // most calls find nothing to do, so only those with work wait for the lock
+        if (isUpToDate(state, currentRootsModificationCount) && changedFiles.isEmpty()) {
+            return;
+        }
+        synchronized (updateLock) {
+            doUpdate(currentRootsModificationCount);
+        }
+    }
+
+    private boolean isUpToDate(State state, long currentRootsModificationCount) {
+        return state.invalidationCount == invalidationCount.get() && state.rootsModificationCount == currentRootsModificationCount;
+    }
+
+    private void doUpdate(long currentRootsModificationCount) {
+        State current = state;
+        if (!isUpToDate(current, currentRootsModificationCount)) {
+            // read before deriving, so an invalidation during the update is not lost
+            long currentInvalidationCount = invalidationCount.get();
+            changedFiles.clear();
+            State rebuilt = new State();
+            try (AstrixMetrics.Span span = AstrixMetrics.getInstance().start(AstrixMetrics.DECLARATION_TABLE_UPDATE)) {
+                Collection<VirtualFile> files = getBeanDeclarationFiles(project);
+                for (VirtualFile file : files) {
+                    ProgressManager.checkCanceled();
+                    rebuilt.updateProviderFile(file, createProviderFile(file));
+                }
+                span.setSize(files.size());
+            }
+            rebuilt.invalidationCount = currentInvalidationCount;
+            rebuilt.rootsModificationCount = currentRootsModificationCount;
+            rebuilt.modificationCount = current.modificationCount + 1;
+            state = rebuilt;
+            AstrixBeanDeclarationSnapshot.getInstance(project).declarationsChanged();
+            return;
+        }
+        if (changedFiles.isEmpty()) {
+            return;
+        }
+
+        Set<VirtualFile> drainedFiles = new LinkedHashSet<>();
+        for (VirtualFile file : new ArrayList<>(changedFiles)) {
+            changedFiles.remove(file);
+            drainedFiles.add(file);
+        }
+        State updated = new State(current);
+        boolean modified = false;
+        try (AstrixMetrics.Span span = AstrixMetrics.getInstance().start(AstrixMetrics.DECLARATION_TABLE_UPDATE)) {
+            Set<VirtualFile> files = new LinkedHashSet<>();
+            for (VirtualFile file : drainedFiles) {
+                files.add(file);
+                files.addAll(current.dependentProviderFiles.getOrDefault(file, emptySet()));
+                addUnresolvedProviderFiles(file, current, files);
+            }
+            for (VirtualFile file : files) {
+                ProgressManager.checkCanceled();
+                modified |= updated.updateProviderFile(file, createProviderFile(file));
+            }
+            span.setSize(files.size());
+        } catch (ProcessCanceledException e) {
+            changedFiles.addAll(drainedFiles);
+            throw e;
+        }
+        // published even when unmodified, as the dependencies may have changed
+        updated.modificationCount = modified ? current.modificationCount + 1 : current.modificationCount;
+        state = updated;
+        if (modified) {
+            AstrixBeanDeclarationSnapshot.getInstance(project).declarationsChanged();
+        }
+    }
+
+    /**
+     * Adds the provider files with an unresolved bean type named like a class declared in the changed file.
+     */
+    private void addUnresolvedProviderFiles(VirtualFile file, State state, Set<VirtualFile> files) {
+        if (state.unresolvedProviderFiles.isEmpty() || !file.isValid()) {
+            return;
+        }
+        PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+        if (psiFile instanceof PsiJavaFile) {
+            addUnresolvedProviderFiles(((PsiJavaFile) psiFile).getClasses(), state, files);
+        }
+    }
+
+    private static void addUnresolvedProviderFiles(PsiClass[] classes, State state, Set<VirtualFile> files) {
+        for (PsiClass psiClass : classes) {
+            files.addAll(state.unresolvedProviderFiles.getOrDefault(psiClass.getName(), emptySet()));
+            addUnresolvedProviderFiles(psiClass.getInnerClasses(), state, files);
+        }
+    }
+
+    boolean isInitialized() {
+        return state.invalidationCount == invalidationCount.get();
+    }
+
+    Map<VirtualFile, List<BeanDeclaration>> getBeanDeclarationsByFile() {
+        Map<VirtualFile, List<BeanDeclaration>> beanDeclarations = new HashMap<>();
+        state.providerFiles.forEach((file, providerFile) -> beanDeclarations.put(file, providerFile.beanDeclarations));
+        return beanDeclarations;
+    }
+
+    Set<VirtualFile> getProviderFiles() {
+        return new HashSet<>(state.providerFiles.keySet());
+    }
+
+    Collection<BeanDeclaration> getBeanDeclarations(GlobalSearchScope globalSearchScope) {
+        List<BeanDeclaration> beanDeclarations = new ArrayList<>();
+        state.providerFiles.forEach((file, providerFile) -> {
+            if (globalSearchScope.contains(file)) {
+                beanDeclarations.addAll(providerFile.beanDeclarations);
+            }
+        });
+        return beanDeclarations;
+    }
+
+    /**
+     * The declarations in the file that provider classes inherit from a supertype declared there.
+     */
+    Set<AstrixBeanDescriptor> getInheritedBeanDeclarations(VirtualFile file) {
+        State current = state;
+        Set<AstrixBeanDescriptor> descriptors = new HashSet<>();
+        Set<VirtualFile> files = new LinkedHashSet<>(current.dependentProviderFiles.getOrDefault(file, emptySet()));
+        files.add(file);
+        for (VirtualFile providerFile : files) {
+            ProviderFile declarations = current.providerFiles.get(providerFile);
+            if (declarations == null) {
+                continue;
+            }
+            for (BeanDeclaration beanDeclaration : declarations.beanDeclarations) {
+                if (file.equals(beanDeclaration.declaringFile)) {
+                    descriptors.add(beanDeclaration.getDescriptor());
+                }
+            }
+        }
+        return descriptors;
+    }
+
+    @Nullable
+    private ProviderFile createProviderFile(VirtualFile file) {
+        if (!file.isValid() || !ProjectFileIndex.getInstance(project).isInContent(file)) {
+            return null;
+        }
+        PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+        Collection<PsiClass> providers = psiFile == null ? emptyList() : findApiProviders(psiFile);
+        Set<VirtualFile> dependencies = new HashSet<>();
+        for (PsiClass provider : providers) {
+            // declarations may be inherited from any supertype, also from those declaring none yet
+            for (PsiClass superClass : InheritanceUtil.getSuperClasses(provider)) {
+                if (!JAVA_LANG_OBJECT.equals(superClass.getQualifiedName())) {
+                    addFile(superClass, dependencies);
+                }
+            }
+        }
+        dependencies.remove(file);
+        Collection<PsiMethod> methods = providers.isEmpty() ? emptyList() : findBeanDeclarations(psiFile);
+        if (methods.isEmpty() && dependencies.isEmpty()) {
+            return null;
+        }
+
+        List<BeanDeclaration> beanDeclarations = new ArrayList<>(methods.size());
+        Set<String> unresolvedNames = new HashSet<>();
+        for (PsiMethod method : methods) {
+            PsiType returnType = method.getReturnType();
+            PsiClass beanClass = PsiUtil.resolveClassInClassTypeOnly(returnType);
+            if (beanClass == null) {
+                if (returnType instanceof PsiClassType) {
+                    unresolvedNames.add(((PsiClassType) returnType).getClassName());
+                }
+                continue;
+            }
+            AstrixBeanDescriptor descriptor = AstrixBeanDescriptor.of(method);
+            if (descriptor == null) {
+                continue;
+            }
+            beanDeclarations.add(new BeanDeclaration(descriptor, getSupertypeClosure(beanClass, dependencies), PsiUtilCore.getVirtualFile(method)));
+            PsiAnnotation qualifier = method.getModifierList().findAnnotation(QUALIFIER_FQN);
+            if (qualifier != null) {
+                addConstantFiles(qualifier, dependencies, new HashSet<>());
+            }
+        }
+        dependencies.remove(file);
+        return new ProviderFile(beanDeclarations, dependencies, unresolvedNames);
+    }
+
+    private static Set<String> getSupertypeClosure(PsiClass beanClass, Set<VirtualFile> dependencies) {
+        Set<String> typeNames = new LinkedHashSet<>();
+        for (PsiClass beanTypeClass : getBeanTypeClasses(beanClass)) {
+            String beanTypeName = beanTypeClass.getQualifiedName();
+            if (beanTypeName != null) {
+                typeNames.add(beanTypeName);
+                addFile(beanTypeClass, dependencies);
+            }
+        }
+        return typeNames;
+    }
+
+    private static void addConstantFiles(PsiElement element, Set<VirtualFile> dependencies, Set<PsiField> visited) {
+        for (PsiReferenceExpression reference : PsiTreeUtil.collectElementsOfType(element, PsiReferenceExpression.class)) {
+            PsiElement target = reference.resolve();
+            if (target instanceof PsiField && visited.add((PsiField) target)) {
+                addFile(target, dependencies);
+                PsiExpression initializer = ((PsiField) target).getInitializer();
+                if (initializer != null) {
+                    addConstantFiles(initializer, dependencies, visited);
+                }
+            }
+        }
+    }
+
+    private static void addFile(PsiElement element, Set<VirtualFile> files) {
+        PsiFile psiFile = element.getContainingFile();
+        VirtualFile file = psiFile == null ? null : psiFile.getVirtualFile();
+        if (file != null) {
+            files.add(file);
+        }
+    }
+
+    static final class BeanDeclaration {
+        private final AstrixBeanDescriptor descriptor;
+        private final Set<String> beanTypeNames;
+        @Nullable
+        private final VirtualFile declaringFile;
+
+        BeanDeclaration(AstrixBeanDescriptor descriptor, Set<String> beanTypeNames, @Nullable VirtualFile declaringFile) {
+            this.descriptor = descriptor;
+            this.beanTypeNames = beanTypeNames;
+            this.declaringFile = declaringFile;
+        }
+
+        AstrixBeanDescriptor getDescriptor() {
+            return descriptor;
+        }
+
+        /**
+         * The declared bean type followed by all of its supertypes.
+         */
+        Set<String> getBeanTypeNames() {
+            return beanTypeNames;
+        }
+
+        /**
+         * The file of the method, which is not the provider file for inherited declarations.
+         */
+        @Nullable
+        VirtualFile getDeclaringFile() {
+            return declaringFile;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BeanDeclaration)) {
+                return false;
+            }
+            BeanDeclaration that = (BeanDeclaration) o;
+            return descriptor.equals(that.descriptor) && beanTypeNames.equals(that.beanTypeNames) && Objects.equals(declaringFile, that.declaringFile);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(descriptor, beanTypeNames, declaringFile);
+        }
+    }
+
+    private static final class ProviderFile {
+        private final List<BeanDeclaration> beanDeclarations;
+        private final Set<VirtualFile> dependencies;
+        private final Set<String> unresolvedNames;
+
+        ProviderFile(List<BeanDeclaration> beanDeclarations, Set<VirtualFile> dependencies, Set<String> unresolvedNames) {
+            this.beanDeclarations = beanDeclarations;
+            this.dependencies = dependencies;
+            this.unresolvedNames = unresolvedNames;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ProviderFile)) {
+                return false;
+            }
+            ProviderFile that = (ProviderFile) o;
+            return unresolvedNames.equals(that.unresolvedNames) && beanDeclarations.equals(that.beanDeclarations);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(beanDeclarations, unresolvedNames);
+        }
+    }
+
+    /**
+     * The provider files with the files they depend on, inverted, and the short names of their unresolved bean types.
+     * Only the update deriving a state modifies it, readers get it once published. The sets in the maps are shared
+     * with the state it was copied from, so they are replaced rather than modified.
+     */
+    private static final class State {
+        private final Map<VirtualFile, ProviderFile> providerFiles;
+        private final Map<VirtualFile, Set<VirtualFile>> dependentProviderFiles;
+        private final Map<String, Set<VirtualFile>> unresolvedProviderFiles;
+        private long invalidationCount = -1;
+        private long rootsModificationCount = -1;
+        private long modificationCount;
+
+        State() {
+            providerFiles = new HashMap<>();
+            dependentProviderFiles = new HashMap<>();
+            unresolvedProviderFiles = new HashMap<>();
+        }
+
+        State(State state) {
+            providerFiles = new HashMap<>(state.providerFiles);
+            dependentProviderFiles = new HashMap<>(state.dependentProviderFiles);
+            unresolvedProviderFiles = new HashMap<>(state.unresolvedProviderFiles);
+            invalidationCount = state.invalidationCount;
+            rootsModificationCount = state.rootsModificationCount;
+        }
+
+        boolean updateProviderFile(VirtualFile file, @Nullable ProviderFile providerFile) {
+            ProviderFile previous = providerFile == null ? providerFiles.remove(file) : providerFiles.put(file, providerFile);
+            if (previous != null) {
+                previous.dependencies.forEach(dependency -> remove(dependentProviderFiles, dependency, file));
+                previous.unresolvedNames.forEach(name -> remove(unresolvedProviderFiles, name, file));
+            }
+            if (providerFile != null) {
+                providerFile.dependencies.forEach(dependency -> add(dependentProviderFiles, dependency, file));
+                providerFile.unresolvedNames.forEach(name -> add(unresolvedProviderFiles, name, file));
+            }
+            return !Objects.equals(previous, providerFile);
+        }
+
+        private static <K> void add(Map<K, Set<VirtualFile>> filesByKey, K key, VirtualFile file) {
+            Set<VirtualFile> files = filesByKey.get(key);
+            if (files == null || !files.contains(file)) {
+                Set<VirtualFile> added = files == null ? new HashSet<>() : new HashSet<>(files);
+                added.add(file);
+                filesByKey.put(key, added);
+            }
+        }
+
+        private static <K> void remove(Map<K, Set<VirtualFile>> filesByKey, K key, VirtualFile file) {
+            Set<VirtualFile> files = filesByKey.get(key);
+            if (files != null && files.contains(file)) {
+                if (files.size() == 1) {
+                    filesByKey.remove(key);
+                } else {
+                    Set<VirtualFile> removed = new HashSet<>(files);
+                    removed.remove(file);
+                    filesByKey.put(key, removed);
+                }
+            }
+        }
+    }
+}
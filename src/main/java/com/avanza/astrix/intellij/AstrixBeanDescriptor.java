@@ -0,0 +1,129 @@
+package com.avanza.astrix.intellij;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiUtil;
+import com.intellij.util.containers.Interner;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import static com.avanza.astrix.intellij.AstrixContextUtility.getQualifier;
+import static com.avanza.astrix.intellij.AstrixContextUtility.isService;
+
+/**
+ * A bean declaration by name only: the class declaring the method, the method name, the erased bean type, the
+ * qualifier and whether it is a service or a library.
+ * <p>
+ * Descriptors are interned and hold no PSI, so caches and line markers can keep them without pinning provider files
+ * or decompiled library classes in memory. The method is only resolved when it is navigated to.
+ */
+public final class AstrixBeanDescriptor {
+    private static final Interner<AstrixBeanDescriptor> INTERNER = Interner.createWeakInterner();
+
+    private final String providerName;
+    private final String methodName;
+    private final String beanTypeName;
+    @Nullable
+    private final String qualifier;
+    private final boolean service;
+
+    private AstrixBeanDescriptor(String providerName, String methodName, String beanTypeName, @Nullable String qualifier, boolean service) {
+        this.providerName = providerName;
+        this.methodName = methodName;
+        this.beanTypeName = beanTypeName;
+        this.qualifier = qualifier;
+        this.service = service;
+    }
+
+    public static AstrixBeanDescriptor create(@NotNull String providerName, @NotNull String methodName, @NotNull String beanTypeName, @Nullable String qualifier, boolean service) {
+        return INTERNER.intern(new AstrixBeanDescriptor(providerName, methodName, beanTypeName, qualifier, service));
+    }
+
+    /**
+     * The descriptor of a {@code @Service} or {@code @Library} method, or {@code null} if its class or bean type has
+     * no qualified name.
+     */
+    @Nullable
+    public static AstrixBeanDescriptor of(@NotNull PsiMethod method) {
+        PsiClass containingClass = method.getContainingClass();
+        PsiClass beanClass = PsiUtil.resolveClassInClassTypeOnly(method.getReturnType());
+        String providerName = containingClass == null ? null : containingClass.getQualifiedName();
+        String beanTypeName = beanClass == null ? null : beanClass.getQualifiedName();
+        if (providerName == null || beanTypeName == null) {
+            return null;
+        }
+        return create(providerName, method.getName(), beanTypeName, getQualifier(method), isService(method));
+    }
+
+    /**
+     * The qualified name of the class declaring the method, which is a base type of the provider for inherited
+     * declarations.
+     */
+    public String getProviderName() {
+        return providerName;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public String getBeanTypeName() {
+        return beanTypeName;
+    }
+
+    @Nullable
+    public String getQualifier() {
+        return qualifier;
+    }
+
+    public boolean isService() {
+        return service;
+    }
+
+    public boolean isLibrary() {
+        return !service;
+    }
+
+    /**
+     * The method without parameters this descriptor was created for, told apart from overloads by its bean type,
+     * qualifier and annotation.
+     */
+    @Nullable
+    public PsiMethod resolve(@NotNull GlobalSearchScope globalSearchScope, @NotNull Project project) {
+        PsiClass provider = JavaPsiFacade.getInstance(project).findClass(providerName, globalSearchScope);
+        if (provider == null) {
+            return null;
+        }
+        return Arrays.stream(provider.findMethodsByName(methodName, false))
+                     .filter(method -> method.getParameterList().isEmpty() && equals(of(method)))
+                     .findFirst()
+                     .orElse(null);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AstrixBeanDescriptor)) {
+            return false;
+        }
+        AstrixBeanDescriptor that = (AstrixBeanDescriptor) o;
+        return service == that.service &&
+                providerName.equals(that.providerName) &&
+                methodName.equals(that.methodName) &&
+                beanTypeName.equals(that.beanTypeName) &&
+                Objects.equals(qualifier, that.qualifier);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(providerName, methodName, beanTypeName, qualifier, service);
+    }
+}
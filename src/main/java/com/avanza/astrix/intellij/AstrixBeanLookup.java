@@ -0,0 +1,207 @@
+package com.avanza.astrix.intellij;
+
+import com.avanza.astrix.intellij.diagnostics.AstrixMetrics;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiExpressionList;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static com.avanza.astrix.intellij.AstrixContextUtility.getBeanTypeClasses;
+import static com.avanza.astrix.intellij.AstrixContextUtility.getLibraryBeanDeclarations;
+import static com.avanza.astrix.intellij.AstrixContextUtility.getQualifier;
+import static com.avanza.astrix.intellij.AstrixContextUtility.getTypeParameter;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Bean declarations bucketed by erased bean type and qualifier.
+ * <p>
+ * Every declaration is registered under its own type and all of its supertypes, so a retrieval is matched with a
+ * single hash lookup (two for reactive types) instead of an {@code isAssignableFrom} check per candidate. Source
+ * declarations come with their supertypes from the {@link AstrixBeanDeclarationTable}, library declarations have theirs
+ * resolved in the whole project when the lookup is created.
+ * Declarations are kept as {@link AstrixBeanDescriptor}s, so a lookup holds no PSI.
+ * <p>
+ * For completion, the declared bean types are also kept sorted by short name and the qualifiers grouped by bean type.
+ */
+public class AstrixBeanLookup {
+    private final Map<BeanKey, List<AstrixBeanDescriptor>> beanDeclarations;
+    private final NavigableMap<String, Set<String>> beanTypeNamesByShortName;
+    private final Map<String, Set<String>> qualifiersByBeanType;
+    private final Project project;
+
+    private AstrixBeanLookup(Map<BeanKey, List<AstrixBeanDescriptor>> beanDeclarations,
+                             NavigableMap<String, Set<String>> beanTypeNamesByShortName,
+                             Project project) {
+        this.beanDeclarations = beanDeclarations;
+        this.beanTypeNamesByShortName = beanTypeNamesByShortName;
+        this.qualifiersByBeanType = new HashMap<>();
+        beanDeclarations.keySet().stream()
+                        .filter(beanKey -> beanKey.qualifier != null)
+                        .forEach(beanKey -> qualifiersByBeanType.computeIfAbsent(beanKey.beanTypeName, key -> new TreeSet<>()).add(beanKey.qualifier));
+        this.project = project;
+    }
+
+    static AstrixBeanLookup create(AstrixBeanDeclarationTable declarationTable, GlobalSearchScope globalSearchScope, Project project) {
+        Map<BeanKey, List<AstrixBeanDescriptor>> beanDeclarations = new HashMap<>();
+        NavigableMap<String, Set<String>> beanTypeNamesByShortName = new TreeMap<>();
+        for (AstrixBeanDeclarationTable.BeanDeclaration beanDeclaration : declarationTable.getBeanDeclarations(globalSearchScope)) {
+            ProgressManager.checkCanceled();
+            AstrixBeanDescriptor descriptor = beanDeclaration.getDescriptor();
+            for (String beanTypeName : beanDeclaration.getBeanTypeNames()) {
+                addBeanDeclaration(new BeanKey(beanTypeName, descriptor.getQualifier()), descriptor, beanDeclarations);
+            }
+            addBeanTypeName(descriptor.getBeanTypeName(), beanTypeNamesByShortName);
+        }
+
+        // the scope is shared by modules seeing the same provider roots, which may see different bean type roots
+        JavaPsiFacade javaPsiFacade = JavaPsiFacade.getInstance(project);
+        GlobalSearchScope allScope = GlobalSearchScope.allScope(project);
+        Map<String, Set<String>> libraryBeanTypeNames = new HashMap<>();
+        for (AstrixBeanDescriptor descriptor : getLibraryBeanDeclarations(globalSearchScope, project)) {
+            ProgressManager.checkCanceled();
+            Set<String> beanTypeNames = libraryBeanTypeNames.computeIfAbsent(descriptor.getBeanTypeName(),
+                    beanTypeName -> getBeanTypeNames(javaPsiFacade.findClass(beanTypeName, allScope), beanTypeName));
+            for (String beanTypeName : beanTypeNames) {
+                addBeanDeclaration(new BeanKey(beanTypeName, descriptor.getQualifier()), descriptor, beanDeclarations);
+            }
+            addBeanTypeName(descriptor.getBeanTypeName(), beanTypeNamesByShortName);
+        }
+        return new AstrixBeanLookup(beanDeclarations, beanTypeNamesByShortName, project);
+    }
+
+    private static Set<String> getBeanTypeNames(@Nullable PsiClass beanClass, String beanTypeName) {
+        Set<String> beanTypeNames = new LinkedHashSet<>();
+        beanTypeNames.add(beanTypeName);
+        if (beanClass != null) {
+            for (PsiClass beanTypeClass : getBeanTypeClasses(beanClass)) {
+                String qualifiedName = beanTypeClass.getQualifiedName();
+                if (qualifiedName != null) {
+                    beanTypeNames.add(qualifiedName);
+                }
+            }
+        }
+        return beanTypeNames;
+    }
+
+    private static void addBeanDeclaration(BeanKey beanKey, AstrixBeanDescriptor descriptor, Map<BeanKey, List<AstrixBeanDescriptor>> beanDeclarations) {
+        List<AstrixBeanDescriptor> descriptors = beanDeclarations.computeIfAbsent(beanKey, key -> new ArrayList<>(1));
+        if (!descriptors.contains(descriptor)) {
+            descriptors.add(descriptor);
+        }
+    }
+
+    private static void addBeanTypeName(String beanTypeName, Map<String, Set<String>> beanTypeNamesByShortName) {
+        String shortName = StringUtil.toLowerCase(StringUtil.getShortName(beanTypeName));
+        beanTypeNamesByShortName.computeIfAbsent(shortName, key -> new TreeSet<>()).add(beanTypeName);
+    }
+
+    /**
+     * The declared bean types whose short name starts with the first letter of the prefix, ignoring case, or all of
+     * them if the prefix is empty. This is deliberately not a range of the whole prefix, so that the caller can still
+     * match camel humps, such as {@code FB} for {@code FooBean}.
+     */
+    public Collection<String> findBeanTypeNamesByInitial(@NotNull String prefix) {
+        Collection<Set<String>> beanTypeNames;
+        if (prefix.isEmpty()) {
+            beanTypeNames = beanTypeNamesByShortName.values();
+        } else {
+            String first = StringUtil.toLowerCase(prefix.substring(0, 1));
+            beanTypeNames = beanTypeNamesByShortName.subMap(first, true, first + Character.MAX_VALUE, true).values();
+        }
+        return beanTypeNames.stream().flatMap(Collection::stream).collect(toList());
+    }
+
+    /**
+     * The qualifiers a bean of the type, or its synchronous counterpart, is declared with.
+     */
+    public Collection<String> getQualifiers(@NotNull String beanTypeName) {
+        Set<String> qualifiers = new TreeSet<>(qualifiersByBeanType.getOrDefault(beanTypeName, emptySet()));
+        String synchronousTypeName = AstrixReactiveTypes.getInstance(project).getSynchronousTypeName(beanTypeName);
+        if (synchronousTypeName != null) {
+            qualifiers.addAll(qualifiersByBeanType.getOrDefault(synchronousTypeName, emptySet()));
+        }
+        return qualifiers;
+    }
+
+    /**
+     * Whether a bean of the type, or its synchronous counterpart, is declared with the qualifier.
+     */
+    public boolean hasBeanDeclaration(@NotNull String beanTypeName, @Nullable String qualifier) {
+        if (hasBeanDeclaration(new BeanKey(beanTypeName, qualifier))) {
+            return true;
+        }
+        String synchronousTypeName = AstrixReactiveTypes.getInstance(project).getSynchronousTypeName(beanTypeName);
+        return synchronousTypeName != null && hasBeanDeclaration(new BeanKey(synchronousTypeName, qualifier));
+    }
+
+    private boolean hasBeanDeclaration(BeanKey beanKey) {
+        return beanDeclarations.containsKey(beanKey);
+    }
+
+    public Collection<AstrixBeanDescriptor> findBeanDeclarations(@NotNull PsiExpressionList psiExpressionList) {
+        PsiClass requestedClass = PsiUtil.resolveClassInClassTypeOnly(getTypeParameter(psiExpressionList));
+        String requestedTypeName;
+        if (requestedClass == null || (requestedTypeName = requestedClass.getQualifiedName()) == null) {
+            return emptyList();
+        }
+
+        try (AstrixMetrics.Span span = AstrixMetrics.getInstance().start(AstrixMetrics.FIND_BEAN_DECLARATIONS)) {
+            String qualifier = getQualifier(psiExpressionList);
+            Set<AstrixBeanDescriptor> beans = new LinkedHashSet<>(beanDeclarations.getOrDefault(new BeanKey(requestedTypeName, qualifier), emptyList()));
+            String synchronousTypeName = AstrixReactiveTypes.getInstance(project).getSynchronousTypeName(requestedTypeName);
+            if (synchronousTypeName != null) {
+                beans.addAll(beanDeclarations.getOrDefault(new BeanKey(synchronousTypeName, qualifier), emptyList()));
+            }
+            span.setSize(beans.size());
+            return beans;
+        }
+    }
+
+    private static final class BeanKey {
+        private final String beanTypeName;
+        @Nullable
+        private final String qualifier;
+
+        BeanKey(String beanTypeName, @Nullable String qualifier) {
+            this.beanTypeName = beanTypeName;
+            this.qualifier = qualifier;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BeanKey)) {
+                return false;
+            }
+            BeanKey beanKey = (BeanKey) o;
+            return beanTypeName.equals(beanKey.beanTypeName) && Objects.equals(qualifier, beanKey.qualifier);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(beanTypeName, qualifier);
+        }
+    }
+}
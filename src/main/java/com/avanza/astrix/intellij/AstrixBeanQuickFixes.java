@@ -0,0 +1,262 @@
+package com.avanza.astrix.intellij;
+
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.DependencyScope;
+import com.intellij.openapi.roots.JavaProjectModelModificationService;
+import com.intellij.openapi.roots.LibraryOrderEntry;
+import com.intellij.openapi.roots.OrderEntry;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.libraries.Library;
+import com.intellij.openapi.roots.libraries.LibraryTablesRegistrar;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiElementFactory;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiExpressionList;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.codeStyle.JavaCodeStyleManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiUtil;
+import com.intellij.psi.util.PsiUtilCore;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static com.avanza.astrix.intellij.AstrixContextUtility.getQualifier;
+import static com.avanza.astrix.intellij.AstrixContextUtility.getTypeParameter;
+
+/**
+ * "Did you mean" fixes for bean retrievals without a matching declaration, nearest first: the same bean declared in a
+ * module or library the retrieving module does not depend on, a declared qualifier of the requested type, a reactive
+ * variant, and declared types with a similar name.
+ * <p>
+ * Candidates come from the {@link AstrixBeanSuggestions} of the project and are checked against the
+ * {@link AstrixBeanLookup} of the retrieving module.
+ */
+class AstrixBeanQuickFixes {
+    private static final int MAX_FIXES = 5;
+
+    private AstrixBeanQuickFixes() {
+    }
+
+    static LocalQuickFix[] create(@NotNull PsiMethodCallExpression psiMethodCallExpression) {
+        Project project = psiMethodCallExpression.getProject();
+        PsiExpressionList argumentList = psiMethodCallExpression.getArgumentList();
+        PsiClass requestedClass = PsiUtil.resolveClassInClassTypeOnly(getTypeParameter(argumentList));
+        String requestedTypeName = requestedClass == null ? null : requestedClass.getQualifiedName();
+        AstrixBeanDeclarationCache beanDeclarationCache = AstrixBeanDeclarationCache.getInstance(project);
+        AstrixBeanLookup beanLookup = beanDeclarationCache.getBeanLookup(psiMethodCallExpression);
+        if (requestedTypeName == null || beanLookup == null) {
+            return LocalQuickFix.EMPTY_ARRAY;
+        }
+        String qualifier = getQualifier(argumentList);
+        AstrixBeanSuggestions suggestions = beanDeclarationCache.getBeanSuggestions();
+        AstrixReactiveTypes reactiveTypes = AstrixReactiveTypes.getInstance(project);
+
+        Map<String, LocalQuickFix> fixes = new LinkedHashMap<>();
+        Module module = ModuleUtilCore.findModuleForPsiElement(psiMethodCallExpression);
+        if (module != null) {
+            Set<String> providerNames = new LinkedHashSet<>(suggestions.getProviderNames(requestedTypeName, qualifier));
+            String synchronousTypeName = reactiveTypes.getSynchronousTypeName(requestedTypeName);
+            if (synchronousTypeName != null) {
+                providerNames.addAll(suggestions.getProviderNames(synchronousTypeName, qualifier));
+            }
+            for (String providerName : providerNames) {
+                AddDependencyFix fix = createAddDependencyFix(providerName, module, project);
+                if (fix != null) {
+                    add(fix, fixes);
+                }
+            }
+        }
+
+        int dependencyFixes = fixes.size();
+        Collection<String> declaredQualifiers = beanLookup.getQualifiers(requestedTypeName);
+        if (qualifier != null) {
+            for (String similarQualifier : suggestions.findQualifiers(qualifier)) {
+                if (declaredQualifiers.contains(similarQualifier)) {
+                    add(new ChangeQualifierFix(similarQualifier), fixes);
+                }
+            }
+            if (beanLookup.hasBeanDeclaration(requestedTypeName, null)) {
+                add(new ChangeQualifierFix(null), fixes);
+            }
+        }
+        if (fixes.size() == dependencyFixes) {
+            declaredQualifiers.forEach(declaredQualifier -> add(new ChangeQualifierFix(declaredQualifier), fixes));
+        }
+
+        for (String reactiveTypeName : reactiveTypes.getReactiveTypeNames(requestedTypeName)) {
+            if (beanLookup.hasBeanDeclaration(reactiveTypeName, qualifier)) {
+                add(new ChangeBeanTypeFix(reactiveTypeName), fixes);
+            }
+        }
+        for (String similarTypeName : suggestions.findBeanTypeNames(requestedTypeName)) {
+            if (beanLookup.hasBeanDeclaration(similarTypeName, qualifier)) {
+                add(new ChangeBeanTypeFix(similarTypeName), fixes);
+            }
+        }
+        return fixes.values().stream().limit(MAX_FIXES).toArray(LocalQuickFix[]::new);
+    }
+
+    private static void add(LocalQuickFix fix, Map<String, LocalQuickFix> fixes) {
+        fixes.putIfAbsent(fix.getName(), fix);
+    }
+
+    @Nullable
+    private static AddDependencyFix createAddDependencyFix(String providerName, Module module, Project project) {
+        PsiClass provider = JavaPsiFacade.getInstance(project).findClass(providerName, GlobalSearchScope.allScope(project));
+        VirtualFile file = provider == null ? null : PsiUtilCore.getVirtualFile(provider);
+        if (file == null) {
+            return null;
+        }
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        Module providerModule = fileIndex.getModuleForFile(file);
+        if (providerModule != null) {
+            return providerModule.equals(module) ? null : new AddDependencyFix(providerModule.getName(), false);
+        }
+        for (OrderEntry orderEntry : fileIndex.getOrderEntriesForFile(file)) {
+            if (orderEntry instanceof LibraryOrderEntry && LibraryTablesRegistrar.PROJECT_LEVEL.equals(((LibraryOrderEntry) orderEntry).getLibraryLevel())) {
+                String libraryName = ((LibraryOrderEntry) orderEntry).getLibraryName();
+                if (libraryName != null) {
+                    return new AddDependencyFix(libraryName, true);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static class ChangeQualifierFix implements LocalQuickFix {
+        @Nullable
+        private final String qualifier;
+
+        ChangeQualifierFix(@Nullable String qualifier) {
+            this.qualifier = qualifier;
+        }
+
+        @NotNull
+        @Override
+        public String getName() {
+            return qualifier == null ? "Remove qualifier" : "Change qualifier to \"" + qualifier + "\"";
+        }
+
+        @NotNull
+        @Override
+        public String getFamilyName() {
+            return "Change astrix bean qualifier";
+        }
+
+        @Override
+        public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor) {
+            PsiElement element = descriptor.getPsiElement();
+            if (!(element instanceof PsiExpressionList)) {
+                return;
+            }
+            PsiExpressionList argumentList = (PsiExpressionList) element;
+            PsiExpression[] expressions = argumentList.getExpressions();
+            if (qualifier == null) {
+                if (expressions.length > 1) {
+                    expressions[1].delete();
+                }
+                return;
+            }
+            PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
+            PsiExpression literal = factory.createExpressionFromText(StringUtil.wrapWithDoubleQuote(StringUtil.escapeStringCharacters(qualifier)), argumentList);
+            if (expressions.length > 1) {
+                expressions[1].replace(literal);
+            } else {
+                argumentList.add(literal);
+            }
+        }
+    }
+
+    private static class ChangeBeanTypeFix implements LocalQuickFix {
+        private final String beanTypeName;
+
+        ChangeBeanTypeFix(String beanTypeName) {
+            this.beanTypeName = beanTypeName;
+        }
+
+        @NotNull
+        @Override
+        public String getName() {
+            return "Change bean type to " + StringUtil.getShortName(beanTypeName);
+        }
+
+        @NotNull
+        @Override
+        public String getFamilyName() {
+            return "Change astrix bean type";
+        }
+
+        @Override
+        public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor) {
+            PsiElement element = descriptor.getPsiElement();
+            PsiExpression[] expressions = element instanceof PsiExpressionList ? ((PsiExpressionList) element).getExpressions() : PsiExpression.EMPTY_ARRAY;
+            if (expressions.length == 0) {
+                return;
+            }
+            PsiExpression classLiteral = JavaPsiFacade.getElementFactory(project).createExpressionFromText(beanTypeName + ".class", element);
+            JavaCodeStyleManager.getInstance(project).shortenClassReferences(expressions[0].replace(classLiteral));
+        }
+    }
+
+    private static class AddDependencyFix implements LocalQuickFix {
+        private final String name;
+        private final boolean library;
+
+        AddDependencyFix(String name, boolean library) {
+            this.name = name;
+            this.library = library;
+        }
+
+        @NotNull
+        @Override
+        public String getName() {
+            return "Add dependency on " + (library ? "library" : "module") + " '" + name + "'";
+        }
+
+        @NotNull
+        @Override
+        public String getFamilyName() {
+            return "Add dependency on astrix bean provider";
+        }
+
+        @Override
+        public boolean startInWriteAction() {
+            return false;
+        }
+
+        @Override
+        public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor) {
+            Module module = ModuleUtilCore.findModuleForPsiElement(descriptor.getPsiElement());
+            if (module == null) {
+                return;
+            }
+            JavaProjectModelModificationService modificationService = JavaProjectModelModificationService.getInstance(project);
+            if (library) {
+                Library dependency = LibraryTablesRegistrar.getInstance().getLibraryTable(project).getLibraryByName(name);
+                if (dependency != null) {
+                    modificationService.addDependency(module, dependency, DependencyScope.COMPILE);
+                }
+            } else {
+                Module dependency = ModuleManager.getInstance(project).findModuleByName(name);
+                if (dependency != null) {
+                    modificationService.addDependency(module, dependency);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.avanza.astrix.intellij;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.psi.PsiClassObjectAccessExpression;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaCodeReferenceElement;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.DefaultFileTypeSpecificInputFilter;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.indexing.ScalarIndexExtension;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.avanza.astrix.intellij.AstrixContextUtility.BEAN_RETRIEVAL_METHOD_NAMES;
+import static com.intellij.openapi.util.text.StringUtil.contains;
+import static com.intellij.psi.util.PsiUtil.skipParenthesizedExprDown;
+import static java.util.Collections.emptyMap;
+
+/**
+ * Indexes Java sources by the simple name of the class literals passed to {@code getBean}/{@code waitForBean}.
+ * <p>
+ * Like {@link AstrixBeanDeclarationIndex} the key is unresolved, so a hit only tells which files may request a bean.
+ * Reactive retrievals are indexed under their own name, e.g. {@code MyServiceAsync}.
+ */
+public class AstrixBeanRetrievalIndex extends ScalarIndexExtension<String> {
+    public static final ID<String, Void> NAME = ID.create("com.avanza.astrix.intellij.AstrixBeanRetrievalIndex");
+
+    @NotNull
+    @Override
+    public ID<String, Void> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, Void, FileContent> getIndexer() {
+        return inputData -> {
+            CharSequence text = inputData.getContentAsText();
+            if (BEAN_RETRIEVAL_METHOD_NAMES.stream().noneMatch(methodName -> contains(text, methodName))) {
+                return emptyMap();
+            }
+            PsiFile psiFile = inputData.getPsiFile();
+            if (!(psiFile instanceof PsiJavaFile)) {
+                return emptyMap();
+            }
+
+            Map<String, Void> result = new HashMap<>();
+            for (PsiMethodCallExpression methodCallExpression : PsiTreeUtil.findChildrenOfType(psiFile, PsiMethodCallExpression.class)) {
+                String beanTypeName;
+                if (BEAN_RETRIEVAL_METHOD_NAMES.contains(methodCallExpression.getMethodExpression().getReferenceName()) &&
+                        (beanTypeName = getRequestedTypeName(methodCallExpression)) != null) {
+                    result.put(beanTypeName, null);
+                }
+            }
+            return result;
+        };
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    @Nullable
+    private static String getRequestedTypeName(PsiMethodCallExpression methodCallExpression) {
+        PsiExpression[] expressions = methodCallExpression.getArgumentList().getExpressions();
+        if (expressions.length < 1) {
+            return null;
+        }
+        // assuming class parameter is the first
+        PsiExpression psiExpression = skipParenthesizedExprDown(expressions[0]);
+        if (!(psiExpression instanceof PsiClassObjectAccessExpression)) {
+            return null;
+        }
+        PsiJavaCodeReferenceElement referenceElement = ((PsiClassObjectAccessExpression) psiExpression).getOperand().getInnermostComponentReferenceElement();
+        return referenceElement == null ? null : referenceElement.getReferenceName();
+    }
+}
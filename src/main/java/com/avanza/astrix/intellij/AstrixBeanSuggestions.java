@@ -0,0 +1,95 @@
+package com.avanza.astrix.intellij;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.search.GlobalSearchScope;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.avanza.astrix.intellij.AstrixContextUtility.getLibraryBeanDeclarations;
+import static java.util.Collections.emptySet;
+
+/**
+ * All bean declarations of the project, regardless of module, arranged for finding near misses: bean type short names
+ * and qualifiers in {@link BkTree}s, and the providers of every bean type and qualifier.
+ */
+class AstrixBeanSuggestions {
+    private final BkTree beanTypeShortNames = new BkTree();
+    private final Map<String, Set<String>> beanTypeNamesByShortName = new HashMap<>();
+    private final BkTree qualifiers = new BkTree();
+    private final Map<Pair<String, String>, Set<String>> providerNames = new HashMap<>();
+
+    private AstrixBeanSuggestions() {
+    }
+
+    static AstrixBeanSuggestions create(AstrixBeanDeclarationTable declarationTable, Project project) {
+        GlobalSearchScope allScope = GlobalSearchScope.allScope(project);
+        AstrixBeanSuggestions suggestions = new AstrixBeanSuggestions();
+        for (AstrixBeanDeclarationTable.BeanDeclaration beanDeclaration : declarationTable.getBeanDeclarations(allScope)) {
+            AstrixBeanDescriptor descriptor = beanDeclaration.getDescriptor();
+            suggestions.add(beanDeclaration.getBeanTypeNames(), descriptor.getQualifier(), descriptor.getProviderName());
+            suggestions.addBeanTypeName(descriptor.getBeanTypeName());
+        }
+        for (AstrixBeanDescriptor descriptor : getLibraryBeanDeclarations(allScope, project)) {
+            suggestions.add(List.of(descriptor.getBeanTypeName()), descriptor.getQualifier(), descriptor.getProviderName());
+            suggestions.addBeanTypeName(descriptor.getBeanTypeName());
+        }
+        return suggestions;
+    }
+
+    private void add(Collection<String> beanTypeNames, @Nullable String qualifier, String providerName) {
+        for (String beanTypeName : beanTypeNames) {
+            providerNames.computeIfAbsent(Pair.create(beanTypeName, qualifier), key -> new LinkedHashSet<>()).add(providerName);
+        }
+        if (qualifier != null) {
+            qualifiers.add(qualifier);
+        }
+    }
+
+    private void addBeanTypeName(String beanTypeName) {
+        String shortName = StringUtil.getShortName(beanTypeName);
+        beanTypeShortNames.add(shortName);
+        beanTypeNamesByShortName.computeIfAbsent(shortName, key -> new LinkedHashSet<>()).add(beanTypeName);
+    }
+
+    /**
+     * Declared bean types with a short name close to that of the bean type, closest first.
+     */
+    List<String> findBeanTypeNames(String beanTypeName) {
+        String shortName = StringUtil.getShortName(beanTypeName);
+        List<String> beanTypeNames = new ArrayList<>();
+        for (String similarShortName : beanTypeShortNames.find(shortName, getMaxDistance(shortName))) {
+            beanTypeNames.addAll(beanTypeNamesByShortName.getOrDefault(similarShortName, emptySet()));
+        }
+        beanTypeNames.remove(beanTypeName);
+        return beanTypeNames;
+    }
+
+    /**
+     * Declared qualifiers close to the qualifier, closest first.
+     */
+    List<String> findQualifiers(String qualifier) {
+        List<String> similarQualifiers = qualifiers.find(qualifier, getMaxDistance(qualifier));
+        similarQualifiers.remove(qualifier);
+        return similarQualifiers;
+    }
+
+    /**
+     * The qualified names of the providers declaring the bean, in any module or library.
+     */
+    Collection<String> getProviderNames(String beanTypeName, @Nullable String qualifier) {
+        return providerNames.getOrDefault(Pair.create(beanTypeName, qualifier), emptySet());
+    }
+
+    private static int getMaxDistance(String word) {
+        return Math.max(1, Math.min(3, word.length() / 3));
+    }
+}
@@ -0,0 +1,176 @@
+package com.avanza.astrix.intellij;
+
+import com.avanza.astrix.intellij.diagnostics.AstrixMetrics;
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.lang.java.JavaLanguage;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.avanza.astrix.intellij.AstrixContextUtility.findBeanUsages;
+import static com.avanza.astrix.intellij.AstrixContextUtility.getRetrievalFiles;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Retrievals of the beans declared in a provider file, searched in the background.
+ * <p>
+ * The search runs as a non-blocking read action, so it is cancelled by any write action and restarted afterwards.
+ * Until a new result is in, the previous one is served. The line markers of the file are refreshed once a result
+ * changes any usage count. Retrievals are kept as smart pointers, so the files they are in are not held in memory.
+ * <p>
+ * Any Java change starts a new search, but a bean is only searched again when its retrieval files or their contents
+ * have changed, or the bean declarations have. The others keep their previous retrievals.
+ */
+public class AstrixBeanUsages implements Disposable {
+    private static final Key<FileUsages> FILE_USAGES = Key.create("astrix.bean.usages");
+
+    private final Project project;
+
+    public AstrixBeanUsages(Project project) {
+        this.project = project;
+    }
+
+    public static AstrixBeanUsages getInstance(Project project) {
+        return project.getService(AstrixBeanUsages.class);
+    }
+
+    /**
+     * The retrievals of the bean declared by the method, or {@code null} if they have not been searched yet.
+     */
+    @Nullable
+    public List<SmartPsiElementPointer<PsiMethodCallExpression>> getUsages(@NotNull PsiMethod method) {
+        PsiFile file = method.getContainingFile();
+        if (file == null) {
+            return null;
+        }
+        FileUsages fileUsages = file.getUserData(FILE_USAGES);
+        boolean upToDate = fileUsages != null &&
+                fileUsages.javaModificationCount == getJavaModificationCount() &&
+                fileUsages.declarationsModificationCount == getDeclarationsModificationCount();
+        AstrixMetrics.getInstance().cacheAccess(AstrixMetrics.BEAN_USAGES_CACHE, upToDate);
+        if (!upToDate) {
+            searchUsages(file);
+        }
+        AstrixBeanDescriptor descriptor = fileUsages == null ? null : AstrixBeanDescriptor.of(method);
+        BeanUsages beanUsages = descriptor == null ? null : fileUsages.usages.get(descriptor);
+        return beanUsages == null ? null : beanUsages.retrievals;
+    }
+
+    private void searchUsages(PsiFile file) {
+        ReadAction.nonBlocking(() -> file.isValid() ? findFileUsages(file, file.getUserData(FILE_USAGES)) : null)
+                  .inSmartMode(project)
+                  .withDocumentsCommitted(project)
+                  .expireWith(this)
+                  .coalesceBy(this, file)
+                  .finishOnUiThread(ModalityState.NON_MODAL, fileUsages -> {
+                      if (fileUsages == null) {
+                          return;
+                      }
+                      FileUsages previous = file.getUserData(FILE_USAGES);
+                      file.putUserData(FILE_USAGES, fileUsages);
+                      if (previous == null || !previous.getUsageCounts().equals(fileUsages.getUsageCounts())) {
+                          DaemonCodeAnalyzer.getInstance(project).restart(file);
+                      }
+                  })
+                  .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    private FileUsages findFileUsages(PsiFile file, @Nullable FileUsages previous) {
+        long javaModificationCount = getJavaModificationCount();
+        long declarationsModificationCount = getDeclarationsModificationCount();
+        // a changed declaration may match other retrievals in the same files
+        boolean declarationsChanged = previous == null || previous.declarationsModificationCount != declarationsModificationCount;
+        Map<AstrixBeanDescriptor, BeanUsages> usages = new HashMap<>();
+        SmartPointerManager smartPointerManager = SmartPointerManager.getInstance(project);
+        AstrixMetrics metrics = AstrixMetrics.getInstance();
+        for (PsiMethod method : AstrixFileAnalysis.of(file).getDeclaredBeans()) {
+            ProgressManager.checkCanceled();
+            AstrixBeanDescriptor descriptor = AstrixBeanDescriptor.of(method);
+            if (descriptor == null) {
+                continue;
+            }
+            Map<VirtualFile, Long> retrievalFileStamps = getModificationStamps(getRetrievalFiles(method));
+            BeanUsages previousUsages = declarationsChanged ? null : previous.usages.get(descriptor);
+            if (previousUsages != null && previousUsages.retrievalFileStamps.equals(retrievalFileStamps)) {
+                usages.put(descriptor, previousUsages);
+                continue;
+            }
+            long start = System.nanoTime();
+            Collection<PsiMethodCallExpression> methodUsages = findBeanUsages(method, retrievalFileStamps.keySet()).findAll();
+            metrics.record(AstrixMetrics.FIND_BEAN_USAGES, start, methodUsages.size());
+            List<SmartPsiElementPointer<PsiMethodCallExpression>> retrievals = methodUsages.stream().map(smartPointerManager::createSmartPsiElementPointer).collect(toList());
+            usages.put(descriptor, new BeanUsages(retrievals, retrievalFileStamps));
+        }
+        return new FileUsages(usages, javaModificationCount, declarationsModificationCount);
+    }
+
+    private Map<VirtualFile, Long> getModificationStamps(Set<VirtualFile> files) {
+        PsiManager psiManager = PsiManager.getInstance(project);
+        Map<VirtualFile, Long> modificationStamps = new HashMap<>();
+        for (VirtualFile file : files) {
+            PsiFile psiFile = psiManager.findFile(file);
+            modificationStamps.put(file, psiFile == null ? -1 : psiFile.getModificationStamp());
+        }
+        return modificationStamps;
+    }
+
+    private long getJavaModificationCount() {
+        return PsiModificationTracker.getInstance(project).forLanguage(JavaLanguage.INSTANCE).getModificationCount();
+    }
+
+    private long getDeclarationsModificationCount() {
+        return AstrixBeanDeclarationCache.getInstance(project).getDeclarationTable().getModificationCount();
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    private static final class FileUsages {
+        private final Map<AstrixBeanDescriptor, BeanUsages> usages;
+        private final long javaModificationCount;
+        private final long declarationsModificationCount;
+
+        FileUsages(Map<AstrixBeanDescriptor, BeanUsages> usages, long javaModificationCount, long declarationsModificationCount) {
+            this.usages = usages;
+            this.javaModificationCount = javaModificationCount;
+            this.declarationsModificationCount = declarationsModificationCount;
+        }
+
+        Map<AstrixBeanDescriptor, Integer> getUsageCounts() {
+            Map<AstrixBeanDescriptor, Integer> usageCounts = new HashMap<>();
+            usages.forEach((descriptor, beanUsages) -> usageCounts.put(descriptor, beanUsages.retrievals.size()));
+            return usageCounts;
+        }
+    }
+
+    private static final class BeanUsages {
+        private final List<SmartPsiElementPointer<PsiMethodCallExpression>> retrievals;
+        private final Map<VirtualFile, Long> retrievalFileStamps;
+
+        BeanUsages(List<SmartPsiElementPointer<PsiMethodCallExpression>> retrievals, Map<VirtualFile, Long> retrievalFileStamps) {
+            this.retrievals = retrievals;
+            this.retrievalFileStamps = retrievalFileStamps;
+        }
+    }
+}
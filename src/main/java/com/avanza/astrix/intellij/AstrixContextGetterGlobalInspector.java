@@ -0,0 +1,76 @@
+package com.avanza.astrix.intellij;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.codeInspection.CommonProblemDescriptor;
+import com.intellij.codeInspection.GlobalInspectionContext;
+import com.intellij.codeInspection.GlobalInspectionTool;
+import com.intellij.codeInspection.InspectionManager;
+import com.intellij.codeInspection.LocalInspectionTool;
+import com.intellij.codeInspection.ProblemDescriptionsProcessor;
+import com.intellij.codeInspection.reference.RefElement;
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.util.Pair;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static com.avanza.astrix.intellij.AstrixContextGetterInspector.NO_BEAN_DECLARATION_FOUND;
+import static com.intellij.codeInspection.ProblemHighlightType.GENERIC_ERROR_OR_WARNING;
+import static com.intellij.openapi.progress.ProgressIndicatorProvider.getGlobalProgressIndicator;
+
+/**
+ * Batch mode of {@link AstrixContextGetterInspector}, running an {@link AstrixRetrievalValidation} on the inspection
+ * threads. In the editor the local inspection is used.
+ */
+public class AstrixContextGetterGlobalInspector extends GlobalInspectionTool {
+    private final AstrixContextGetterInspector localInspection = new AstrixContextGetterInspector();
+
+    @Override
+    public void runInspection(@NotNull AnalysisScope scope,
+                              @NotNull InspectionManager manager,
+                              @NotNull GlobalInspectionContext globalContext,
+                              @NotNull ProblemDescriptionsProcessor problemDescriptionsProcessor) {
+        AstrixRetrievalValidation validation = AstrixRetrievalValidation.create(scope, globalContext.getProject());
+        validation.buildBeanLookups(AstrixContextGetterGlobalInspector::runConcurrently);
+
+        Queue<Pair<PsiFile, CommonProblemDescriptor>> problems = new ConcurrentLinkedQueue<>();
+        validation.validate(AstrixContextGetterGlobalInspector::runConcurrently, (file, retrieval) ->
+                problems.add(Pair.create(file, manager.createProblemDescriptor(retrieval.getArgumentList(),
+                                                                               NO_BEAN_DECLARATION_FOUND,
+                                                                               false,
+                                                                               AstrixBeanQuickFixes.create(retrieval),
+                                                                               GENERIC_ERROR_OR_WARNING))));
+
+        ReadAction.run(() -> {
+            for (Pair<PsiFile, CommonProblemDescriptor> problem : problems) {
+                RefElement refElement = globalContext.getRefManager().getReference(problem.getFirst());
+                if (refElement != null) {
+                    problemDescriptionsProcessor.addProblemElement(refElement, problem.getSecond());
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean isReadActionNeeded() {
+        return false;
+    }
+
+    @Nullable
+    @Override
+    public LocalInspectionTool getSharedLocalInspectionTool() {
+        return localInspection;
+    }
+
+    private static void runConcurrently(List<Runnable> tasks) {
+        JobLauncher.getInstance().invokeConcurrentlyUnderProgress(tasks, getGlobalProgressIndicator(), task -> {
+            task.run();
+            return true;
+        });
+    }
+}
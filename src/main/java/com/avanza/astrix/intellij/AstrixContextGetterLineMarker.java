@@ -1,22 +1,17 @@
 package com.avanza.astrix.intellij;
 
+import com.avanza.astrix.intellij.diagnostics.AstrixMetrics;
 import com.intellij.codeInsight.daemon.LineMarkerInfo;
 import com.intellij.codeInsight.daemon.LineMarkerProviderDescriptor;
 import com.intellij.codeInsight.navigation.NavigationGutterIconBuilder;
-import com.intellij.concurrency.JobLauncher;
 import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.module.Module;
-import com.intellij.openapi.module.ModuleUtil;
-import com.intellij.openapi.progress.ProgressIndicator;
-import com.intellij.openapi.progress.ProgressIndicatorProvider;
-import com.intellij.openapi.roots.ModuleFileIndex;
-import com.intellij.openapi.roots.ModuleRootManager;
-import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiElement;
-import com.intellij.psi.PsiMethod;
 import com.intellij.psi.PsiMethodCallExpression;
 import com.intellij.psi.PsiReferenceExpression;
-import com.intellij.psi.PsiType;
 import com.intellij.psi.search.GlobalSearchScope;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -24,20 +19,13 @@ import org.jetbrains.annotations.Nullable;
 import javax.swing.*;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.function.Predicate;
 
-import static com.avanza.astrix.intellij.AstrixContextUtility.getBeanDeclarationCandidates;
-import static com.avanza.astrix.intellij.AstrixContextUtility.isAstrixBeanRetriever;
-import static com.avanza.astrix.intellij.AstrixContextUtility.isBeanDeclaration;
-import static com.avanza.astrix.intellij.AstrixContextUtility.isLibrary;
-import static com.avanza.astrix.intellij.AstrixContextUtility.isService;
 import static com.intellij.openapi.util.NotNullLazyValue.lazy;
 import static java.util.stream.Collectors.toList;
 
-public class AstrixContextGetterLineMarker extends LineMarkerProviderDescriptor {
+public class AstrixContextGetterLineMarker extends LineMarkerProviderDescriptor implements DumbAware {
     private final Icon icon = Icons.Gutter.asterisk;
     private final Option getterOption = new Option("astrix.getter", "Astrix getter", icon);
 
@@ -51,69 +39,70 @@ public class AstrixContextGetterLineMarker extends LineMarkerProviderDescriptor
     public void collectSlowLineMarkers(@NotNull List<? extends PsiElement> elements, @NotNull Collection<? super LineMarkerInfo<?>> result) {
         ApplicationManager.getApplication().assertReadAccessAllowed();
 
-        if (getterOption.isEnabled()) {
-            ConcurrentMap<GlobalSearchScope, Collection<PsiMethod>> candidatesByModule = new ConcurrentHashMap<>();
-
-            final Object lock = new Object();
-            ProgressIndicator indicator = ProgressIndicatorProvider.getGlobalProgressIndicator();
-            JobLauncher.getInstance().invokeConcurrentlyUnderProgress(elements, indicator, element -> {
-                createLineMarkerInfo(element, candidatesByModule).ifPresent(info -> {
-                    synchronized (lock) {
-                        result.add(info);
-                    }
-                });
-                return true;
-            });
-
+        if (getterOption.isEnabled() && !elements.isEmpty()) {
+            try (AstrixMetrics.Span span = AstrixMetrics.getInstance().start(AstrixMetrics.RETRIEVAL_LINE_MARKERS)) {
+                int markers = result.size();
+                boolean dumb = DumbService.isDumb(elements.get(0).getProject());
+                AstrixLineMarkers.collectConcurrently(elements, dumb ? this::createSnapshotLineMarkerInfo : this::createLineMarkerInfo, result);
+                span.setSize(result.size() - markers);
+            }
         }
     }
 
-    private Optional<LineMarkerInfo<?>> createLineMarkerInfo(PsiElement element, ConcurrentMap<GlobalSearchScope, Collection<PsiMethod>> candidatesByModule) {
+    private Optional<LineMarkerInfo<?>> createLineMarkerInfo(PsiElement element) {
         PsiElement parent;
         if (element instanceof PsiReferenceExpression && (parent = element.getParent()) instanceof PsiMethodCallExpression) {
             PsiMethodCallExpression psiMethodCallExpression = (PsiMethodCallExpression) parent;
 
-            GlobalSearchScope globalSearchScope;
-            if (isAstrixBeanRetriever(psiMethodCallExpression.resolveMethod()) && (globalSearchScope = getSearchScope(element)) != null) {
-                Collection<PsiMethod> candidates = candidatesByModule.computeIfAbsent(globalSearchScope,
-                                                                                      searchScope -> getBeanDeclarationCandidates(searchScope, element.getProject()));
-                Predicate<PsiMethod> isBeanDeclaration = isBeanDeclaration(psiMethodCallExpression.getArgumentList());
-                return candidates.stream()
-                                 .filter(isBeanDeclaration)
-                                 .findFirst()
-                                 .map(beanDeclarationMethod -> NavigationGutterIconBuilder.create(icon)
-                                                                                          .setTargets(lazy(() -> candidates.stream().filter(isBeanDeclaration).collect(toList())))
-                                                                                          .setTooltipText(getTooltipText(beanDeclarationMethod))
+            Collection<AstrixBeanDescriptor> beanDeclarations = AstrixFileAnalysis.of(element.getContainingFile()).getBeanDeclarations(psiMethodCallExpression);
+            if (beanDeclarations != null) {
+                Project project = element.getProject();
+                GlobalSearchScope resolveScope = element.getResolveScope();
+                return beanDeclarations.stream()
+                                       .findFirst()
+                                       .map(beanDeclaration -> NavigationGutterIconBuilder.create(icon)
+                                                                                          .setTargets(lazy(() -> beanDeclarations.stream()
+                                                                                                                                 .map(descriptor -> descriptor.resolve(resolveScope, project))
+                                                                                                                                 .filter(Objects::nonNull)
+                                                                                                                                 .distinct()
+                                                                                                                                 .collect(toList())))
+                                                                                          .setTooltipText(getTooltipText(beanDeclaration.isService(), beanDeclaration.isLibrary(), StringUtil.getShortName(beanDeclaration.getBeanTypeName())))
                                                                                           .createLineMarkerInfo(element));
             }
         }
         return Optional.empty();
     }
 
-    @Nullable
-    private GlobalSearchScope getSearchScope(PsiElement element) {
-        Module module;
-        VirtualFile virtualFile;
-        if ((module = ModuleUtil.findModuleForPsiElement(element)) == null || (virtualFile = element.getContainingFile().getVirtualFile()) == null) {
-            return null;
+    private Optional<LineMarkerInfo<?>> createSnapshotLineMarkerInfo(PsiElement element) {
+        PsiElement parent;
+        if (element instanceof PsiReferenceExpression && (parent = element.getParent()) instanceof PsiMethodCallExpression) {
+            AstrixBeanDeclarationSnapshot snapshot = AstrixBeanDeclarationSnapshot.getInstance(element.getProject());
+            List<AstrixBeanDeclarationSnapshot.Declaration> declarations = snapshot.findDeclarations((PsiMethodCallExpression) parent);
+            if (declarations != null && !declarations.isEmpty()) {
+                AstrixBeanDeclarationSnapshot.Declaration declaration = declarations.get(0);
+                return Optional.of(NavigationGutterIconBuilder.create(icon)
+                                                              .setTargets(lazy(() -> declarations.stream()
+                                                                                                 .map(snapshot::resolve)
+                                                                                                 .filter(Objects::nonNull)
+                                                                                                 .distinct()
+                                                                                                 .collect(toList())))
+                                                              .setTooltipText(getTooltipText(declaration.isService(), !declaration.isService(), StringUtil.getShortName(declaration.getBeanTypeName())))
+                                                              .createLineMarkerInfo(element));
+            }
         }
-
-        ModuleFileIndex fileIndex = ModuleRootManager.getInstance(module).getFileIndex();
-        boolean includeTests = fileIndex.isInTestSourceContent(virtualFile);
-        return module.getModuleRuntimeScope(includeTests);
+        return Optional.empty();
     }
 
-    private String getTooltipText(PsiMethod method) {
+    private String getTooltipText(boolean service, boolean library, @Nullable String beanType) {
         StringBuilder sb = new StringBuilder("<html><body>");
-        if(isService(method)) {
+        if(service) {
             sb.append("<b>").append("Service").append("</b><br/>");
-        } else if(isLibrary(method)) {
+        } else if(library) {
             sb.append("<b>").append("Library").append("</b><br/>");
         }
         sb.append("Navigate to bean declaration");
-        PsiType returnType = method.getReturnType();
-        if(returnType != null) {
-            sb.append(" of ").append(returnType.getPresentableText());
+        if(beanType != null) {
+            sb.append(" of ").append(beanType);
         }
         sb.append("</body></html>");
         return sb.toString();
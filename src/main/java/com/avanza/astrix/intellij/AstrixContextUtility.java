@@ -1,51 +1,73 @@
 package com.avanza.astrix.intellij;
 
 import com.avanza.astrix.intellij.query.QueryChain;
-import com.intellij.openapi.module.ModuleManager;
+import com.intellij.lang.java.JavaLanguage;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.RecursionManager;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiAnnotation;
+import com.intellij.psi.PsiAnnotationMemberValue;
 import com.intellij.psi.PsiAnnotationOwner;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiClassObjectAccessExpression;
+import com.intellij.psi.PsiClassOwner;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiExpression;
 import com.intellij.psi.PsiExpressionList;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiMethod;
 import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.PsiReference;
 import com.intellij.psi.PsiReferenceExpression;
 import com.intellij.psi.PsiType;
 import com.intellij.psi.PsiVariable;
 import com.intellij.psi.impl.JavaConstantExpressionEvaluator;
 import com.intellij.psi.search.GlobalSearchScope;
-import com.intellij.psi.search.PsiSearchScopeUtil;
-import com.intellij.psi.search.searches.AnnotatedElementsSearch;
+import com.intellij.psi.search.ProjectScope;
 import com.intellij.psi.search.searches.MethodReferencesSearch;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.InheritanceUtil;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+import com.intellij.util.EmptyQuery;
 import com.intellij.util.Query;
+import com.intellij.util.indexing.FileBasedIndex;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
-import static com.intellij.openapi.util.text.StringUtil.trimEnd;
+import static com.intellij.psi.CommonClassNames.JAVA_LANG_OBJECT;
 import static com.intellij.psi.PsiAnnotation.DEFAULT_REFERENCED_METHOD_NAME;
 import static com.intellij.psi.util.PsiUtil.skipParenthesizedExprDown;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 
 public class AstrixContextUtility {
 
     private static final String ASTRIX_FQN = "com.avanza.astrix.context.Astrix";
-    private static final String LIBRARY_FQN = "com.avanza.astrix.provider.core.Library";
-    private static final String SERVICE_FQN = "com.avanza.astrix.provider.core.Service";
-    private static final String QUALIFIER_FQN = "com.avanza.astrix.provider.core.AstrixQualifier";
-    private static final String API_PROVIDER_FQN = "com.avanza.astrix.provider.core.AstrixApiProvider";
-    private static final String REACTIVE_POSTFIX = "Async";
-    private static final Set<String> BEAN_RETRIEVAL_METHOD_NAMES = Set.of("getBean", "waitForBean");
+    static final String LIBRARY_FQN = "com.avanza.astrix.provider.core.Library";
+    static final String SERVICE_FQN = "com.avanza.astrix.provider.core.Service";
+    static final String QUALIFIER_FQN = "com.avanza.astrix.provider.core.AstrixQualifier";
+    static final String API_PROVIDER_FQN = "com.avanza.astrix.provider.core.AstrixApiProvider";
+    static final Set<String> BEAN_RETRIEVAL_METHOD_NAMES = Set.of("getBean", "waitForBean");
 
     public static boolean isAstrixBeanRetriever(@Nullable PsiMethod method) {
         if(method == null) {
@@ -62,8 +84,7 @@ public class AstrixContextUtility {
         if (containingClass == null) {
             return false;
         }
-        PsiAnnotationOwner classAnnotations = containingClass.getModifierList();
-        return classAnnotations != null && classAnnotations.findAnnotation(API_PROVIDER_FQN) != null && (isService(method) || isLibrary(method));
+        return isApiProvider(containingClass) && (isService(method) || isLibrary(method));
     }
 
     public static boolean isService(PsiMethod method) {
@@ -74,83 +95,194 @@ public class AstrixContextUtility {
         return method.getModifierList().findAnnotation(LIBRARY_FQN) != null;
     }
 
-    public static Collection<PsiMethod> getBeanDeclarationCandidates(GlobalSearchScope globalSearchScope, Project project) {
-        JavaPsiFacade javaPsiFacade = JavaPsiFacade.getInstance(project);
-        PsiClass apiProviderAnnotation = javaPsiFacade.findClass(API_PROVIDER_FQN, globalSearchScope);
-        if (apiProviderAnnotation == null) {
+    public static Collection<VirtualFile> getBeanDeclarationFiles(Project project) {
+        // compiled provider classes are covered by getLibraryBeanDeclarations
+        // the keys include AstrixBeanDeclarationIndex.INHERITING_PROVIDER_KEY, whose files are wanted here as well
+        FileBasedIndex fileBasedIndex = FileBasedIndex.getInstance();
+        GlobalSearchScope contentScope = ProjectScope.getContentScope(project);
+        return fileBasedIndex.getAllKeys(AstrixBeanDeclarationIndex.NAME, project)
+                             .stream()
+                             .flatMap(key -> {
+                                 ProgressManager.checkCanceled();
+                                 return fileBasedIndex.getContainingFiles(AstrixBeanDeclarationIndex.NAME, key, contentScope).stream();
+                             })
+                             .collect(toSet());
+    }
+
+    public static Collection<AstrixBeanDescriptor> getLibraryBeanDeclarations(GlobalSearchScope globalSearchScope, Project project) {
+        FileBasedIndex fileBasedIndex = FileBasedIndex.getInstance();
+        return fileBasedIndex.getAllKeys(AstrixLibraryBeanIndex.NAME, project)
+                             .stream()
+                             .flatMap(beanTypeName -> {
+                                 ProgressManager.checkCanceled();
+                                 return fileBasedIndex.getValues(AstrixLibraryBeanIndex.NAME, beanTypeName, globalSearchScope).stream();
+                             })
+                             .flatMap(Collection::stream)
+                             .distinct()
+                             .collect(toList());
+    }
+
+    public static Collection<PsiMethod> findBeanDeclarations(PsiFile psiFile) {
+        return findApiProviders(psiFile).stream()
+                                        .flatMap(provider -> getBeanMethods(provider).stream())
+                                        .distinct()
+                                        .collect(toList());
+    }
+
+    static Collection<PsiClass> findApiProviders(PsiFile psiFile) {
+        if (!(psiFile instanceof PsiClassOwner)) {
             return emptyList();
         }
-        Predicate<PsiMethod> isService = AstrixContextUtility::isService;
-        Predicate<PsiMethod> isLibrary = AstrixContextUtility::isLibrary;
-        return AnnotatedElementsSearch.searchPsiClasses(apiProviderAnnotation, globalSearchScope).findAll()
-                                      .stream()
-                                      .flatMap(psiClass -> Arrays.stream(psiClass.getMethods())) // TODO: getAllMethods?
-                                      .filter(isService.or(isLibrary))
-                                      .collect(toList());
+        return Arrays.stream(((PsiClassOwner) psiFile).getClasses())
+                     .flatMap(AstrixContextUtility::withInnerClasses)
+                     .filter(AstrixContextUtility::isApiProvider)
+                     .collect(toList());
+    }
+
+    private static boolean isApiProvider(PsiClass psiClass) {
+        PsiAnnotationOwner classAnnotations = psiClass.getModifierList();
+        return classAnnotations != null && classAnnotations.findAnnotation(API_PROVIDER_FQN) != null;
+    }
+
+    /**
+     * The {@code @Service} and {@code @Library} methods of a class, including those inherited from its supertypes
+     * unless the class declares a method with the same name itself.
+     * <p>
+     * The result is cached per class and built from the cached results of the direct supertypes, so providers sharing
+     * a base interface resolve it once.
+     */
+    static List<PsiMethod> getBeanMethods(PsiClass psiClass) {
+        return CachedValuesManager.getCachedValue(psiClass, () -> {
+            List<PsiMethod> methods = RecursionManager.doPreventingRecursion(psiClass, true, () -> collectBeanMethods(psiClass));
+            return CachedValueProvider.Result.create(methods == null ? emptyList() : methods,
+                                                     PsiModificationTracker.getInstance(psiClass.getProject()).forLanguage(JavaLanguage.INSTANCE));
+        });
     }
 
-    public static Predicate<PsiMethod> isBeanDeclaration(PsiExpressionList psiExpressionList) {
-        PsiType typeParameter = getTypeParameter(psiExpressionList);
-        if (typeParameter == null) {
-            return psiMethod -> false;
+    private static List<PsiMethod> collectBeanMethods(PsiClass psiClass) {
+        Set<String> declaredNames = new HashSet<>();
+        List<PsiMethod> methods = new ArrayList<>();
+        for (PsiMethod method : psiClass.getMethods()) {
+            declaredNames.add(method.getName());
+            if (isService(method) || isLibrary(method)) {
+                methods.add(method);
+            }
+        }
+        for (PsiClass superClass : psiClass.getSupers()) {
+            if (JAVA_LANG_OBJECT.equals(superClass.getQualifiedName())) {
+                continue;
+            }
+            for (PsiMethod method : getBeanMethods(superClass)) {
+                if (declaredNames.add(method.getName())) {
+                    methods.add(method);
+                }
+            }
         }
+        return methods;
+    }
 
-        Predicate<PsiType> isRequestedType = isSameOrReactiveType(typeParameter, psiExpressionList.getProject());
+    /**
+     * The bean class and its supertypes except {@code Object}, the types a bean of the class is keyed under.
+     */
+    static List<PsiClass> getBeanTypeClasses(PsiClass beanClass) {
+        List<PsiClass> beanTypeClasses = new ArrayList<>();
+        beanTypeClasses.add(beanClass);
+        for (PsiClass superClass : InheritanceUtil.getSuperClasses(beanClass)) {
+            if (!JAVA_LANG_OBJECT.equals(superClass.getQualifiedName())) {
+                beanTypeClasses.add(superClass);
+            }
+        }
+        return beanTypeClasses;
+    }
 
-        String qualifierParameter = getQualifier(psiExpressionList);
-        return psiMethod -> {
-            PsiType beanType = psiMethod.getReturnType();
-            String beanQualifier = getQualifier(psiMethod);
-            return beanType != null && isRequestedType.test(beanType) && Objects.equals(qualifierParameter, beanQualifier);
-        };
+    private static Stream<PsiClass> withInnerClasses(PsiClass psiClass) {
+        return Stream.concat(Stream.of(psiClass), Arrays.stream(psiClass.getInnerClasses()).flatMap(AstrixContextUtility::withInnerClasses));
     }
 
-    public static Collection<Query<PsiMethodCallExpression>> findBeanUsages(PsiMethod method) {
+    /**
+     * The files that may retrieve the bean declared by the method: those with class literals named like the bean type,
+     * its supertypes or their reactive counterparts, among the dependents of the module declaring it.
+     */
+    static Set<VirtualFile> getRetrievalFiles(PsiMethod method) {
         PsiType beanType = method.getReturnType();
-        if (beanType == null) {
-            return emptyList();
+        String beanTypeName = AstrixBeanDeclarationIndex.getBeanTypeName(method);
+        if (beanType == null || beanTypeName == null) {
+            return emptySet();
         }
 
-        String beanQualifier = getQualifier(method);
-
         Project project = method.getProject();
-        Optional<GlobalSearchScope> maybeSearchScope = Arrays.stream(ModuleManager.getInstance(project).getModules())
-                                                             .map(module -> module.getModuleRuntimeScope(true))
-                                                             .filter(globalSearchScope -> PsiSearchScopeUtil.isInScope(globalSearchScope, method))
-                                                             .reduce(GlobalSearchScope::union);
+        GlobalSearchScope dependentsScope = AstrixScopeRegistry.getInstance(project).getDependentsScope(method);
+        if (dependentsScope == null) {
+            return emptySet();
+        }
 
-        if (maybeSearchScope.isEmpty()) {
-            return emptyList();
+        FileBasedIndex fileBasedIndex = FileBasedIndex.getInstance();
+        AstrixReactiveTypes reactiveTypes = AstrixReactiveTypes.getInstance(project);
+        Set<String> retrievedTypeNames = new LinkedHashSet<>();
+        retrievedTypeNames.add(beanTypeName);
+        PsiClass beanClass = PsiUtil.resolveClassInClassTypeOnly(beanType);
+        if (beanClass != null) {
+            for (PsiClass beanTypeClass : getBeanTypeClasses(beanClass)) {
+                if (beanTypeClass.getName() != null) {
+                    retrievedTypeNames.add(beanTypeClass.getName());
+                }
+            }
+        }
+        return retrievedTypeNames.stream()
+                                 .flatMap(typeName -> Stream.concat(Stream.of(typeName), reactiveTypes.getReactiveTypeNames(typeName).stream()))
+                                 .flatMap(retrievedTypeName -> fileBasedIndex.getContainingFiles(AstrixBeanRetrievalIndex.NAME, retrievedTypeName, dependentsScope).stream())
+                                 .collect(toSet());
+    }
+
+    public static Query<PsiMethodCallExpression> findBeanUsages(PsiMethod method) {
+        return findBeanUsages(method, getRetrievalFiles(method));
+    }
+
+    /**
+     * The retrievals of the bean declared by the method among the given {@link #getRetrievalFiles(PsiMethod) retrieval files}.
+     */
+    static Query<PsiMethodCallExpression> findBeanUsages(PsiMethod method, Set<VirtualFile> retrievalFiles) {
+        PsiType beanType = method.getReturnType();
+        if (beanType == null || retrievalFiles.isEmpty()) {
+            return EmptyQuery.getEmptyQuery();
         }
 
-        GlobalSearchScope searchScope = maybeSearchScope.get();
+        String beanQualifier = getQualifier(method);
+        Project project = method.getProject();
+        AstrixReactiveTypes reactiveTypes = AstrixReactiveTypes.getInstance(project);
+
+        GlobalSearchScope searchScope = GlobalSearchScope.filesScope(project, retrievalFiles);
 
         JavaPsiFacade javaPsiFacade = JavaPsiFacade.getInstance(project);
 
         PsiClass astrixInterface = javaPsiFacade.findClass(ASTRIX_FQN, GlobalSearchScope.allScope(project));
         if (astrixInterface == null) {
-            return emptyList();
+            return EmptyQuery.getEmptyQuery();
         }
 
-        return BEAN_RETRIEVAL_METHOD_NAMES.stream().flatMap(methodName -> Arrays.stream(astrixInterface.findMethodsByName(methodName, true)))
-                     .map(psiMethod -> MethodReferencesSearch.search(psiMethod, searchScope, true))
-                     .map(query -> new QueryChain<>(query).instanceOf(PsiReferenceExpression.class)
-                                                          .map(PsiReferenceExpression::getContext)
-                                                          .instanceOf(PsiMethodCallExpression.class)
-                                                          .filter(psiMethodCallExpression -> {
-                                                              PsiExpressionList parameters = psiMethodCallExpression.getArgumentList();
-                                                              PsiType typeParameter = getTypeParameter(parameters);
-                                                              String qualifierParameter = getQualifier(parameters);
-                                                              return typeParameter != null &&
-                                                                      isSameOrReactiveType(typeParameter, parameters.getProject()).test(beanType) &&
-                                                                      Objects.equals(qualifierParameter, beanQualifier);
-                                                          })
-                                                          .query())
-                     .collect(toList());
+        List<Query<PsiReference>> retrievalSearches = BEAN_RETRIEVAL_METHOD_NAMES.stream()
+                                                                                 .flatMap(methodName -> Arrays.stream(astrixInterface.findMethodsByName(methodName, true)))
+                                                                                 .map(psiMethod -> MethodReferencesSearch.search(psiMethod, searchScope, true))
+                                                                                 .collect(toList());
+        return QueryChain.merge(retrievalSearches)
+                         .instanceOf(PsiReferenceExpression.class)
+                         .map(PsiReferenceExpression::getContext)
+                         .instanceOf(PsiMethodCallExpression.class)
+                         .distinct()
+                         .filter(psiMethodCallExpression -> {
+                             ProgressManager.checkCanceled();
+                             PsiExpressionList parameters = psiMethodCallExpression.getArgumentList();
+                             PsiType typeParameter = getTypeParameter(parameters);
+                             String qualifierParameter = getQualifier(parameters);
+                             return typeParameter != null &&
+                                     isSameOrReactiveType(typeParameter, reactiveTypes).test(beanType) &&
+                                     Objects.equals(qualifierParameter, beanQualifier);
+                         })
+                         .query();
     }
 
     @Nullable
-    private static PsiType getTypeParameter(PsiExpressionList parameters) {
+    static PsiType getTypeParameter(PsiExpressionList parameters) {
         PsiExpression[] expressions = parameters.getExpressions();
         if (expressions.length < 1) {
             return null;
@@ -166,7 +298,7 @@ public class AstrixContextUtility {
     }
 
     @Nullable
-    private static String getQualifier(PsiExpressionList parameters) {
+    static String getQualifier(PsiExpressionList parameters) {
         PsiExpression[] expressions = parameters.getExpressions();
         if (expressions.length < 2) {
             return null;
@@ -178,13 +310,16 @@ public class AstrixContextUtility {
     }
 
     @Nullable
-    private static String getQualifier(PsiMethod method) {
-        return Optional.ofNullable(method.getModifierList().findAnnotation(QUALIFIER_FQN))
-                       .flatMap(annotation -> Optional.ofNullable(annotation.findDeclaredAttributeValue(DEFAULT_REFERENCED_METHOD_NAME)))
-                       .filter(PsiExpression.class::isInstance)
-                       .map(PsiExpression.class::cast)
-                       .map(AstrixContextUtility::resolveValue)
-                       .orElse(null);
+    static String getQualifier(PsiMethod method) {
+        PsiAnnotation qualifier = method.getModifierList().findAnnotation(QUALIFIER_FQN);
+        if (qualifier == null) {
+            return null;
+        }
+        return CachedValuesManager.getCachedValue(qualifier, () -> {
+            PsiAnnotationMemberValue value = qualifier.findDeclaredAttributeValue(DEFAULT_REFERENCED_METHOD_NAME);
+            PsiExpression psiExpression = value instanceof PsiExpression ? (PsiExpression) value : null;
+            return CachedValueProvider.Result.create(resolveValue(psiExpression), getDependencies(qualifier, psiExpression));
+        });
     }
 
     @Nullable
@@ -192,24 +327,46 @@ public class AstrixContextUtility {
         if(psiExpression instanceof PsiReferenceExpression) {
             PsiReferenceExpression psiReferenceExpression = (PsiReferenceExpression) psiExpression;
             PsiElement psiElement = psiReferenceExpression.resolve();
-            if(psiElement instanceof PsiVariable) {
+            if(psiElement instanceof PsiField) {
+                return getConstantValue((PsiField) psiElement);
+            } else if(psiElement instanceof PsiVariable) {
                 PsiVariable psiVariable = (PsiVariable) psiElement;
                 psiExpression = psiVariable.getInitializer();
             }
         }
 
+        return computeConstantValue(psiExpression);
+    }
+
+    @Nullable
+    private static String getConstantValue(PsiField field) {
+        return CachedValuesManager.getCachedValue(field, () -> {
+            PsiExpression initializer = field.getInitializer();
+            return CachedValueProvider.Result.create(computeConstantValue(initializer), getDependencies(field, initializer));
+        });
+    }
+
+    @Nullable
+    private static String computeConstantValue(@Nullable PsiExpression psiExpression) {
         Object constantExpression = JavaConstantExpressionEvaluator.computeConstantExpression(psiExpression, false);
         return constantExpression instanceof String? (String) constantExpression : null;
     }
 
-    private static Predicate<PsiType> isSameOrReactiveType(@NotNull PsiType requestedType, Project project) {
+    private static Object[] getDependencies(PsiElement owner, @Nullable PsiExpression psiExpression) {
+        // values referring to other constants may change with any other file
+        boolean hasReferences = psiExpression instanceof PsiReferenceExpression || PsiTreeUtil.findChildOfType(psiExpression, PsiReferenceExpression.class) != null;
+        PsiFile file = owner.getContainingFile();
+        return hasReferences ? new Object[]{file, PsiModificationTracker.getInstance(owner.getProject()).forLanguage(JavaLanguage.INSTANCE)} : new Object[]{file};
+    }
+
+    private static Predicate<PsiType> isSameOrReactiveType(@NotNull PsiType requestedType, AstrixReactiveTypes reactiveTypes) {
         Predicate<PsiType> matchesType = requestedType::isAssignableFrom;
 
-        String canonicalText = requestedType.getCanonicalText();
-        if(canonicalText.endsWith(REACTIVE_POSTFIX)) {
-            String nonReactiveTypeName = trimEnd(canonicalText, REACTIVE_POSTFIX);
-            PsiType nonReactiveType = PsiType.getTypeByName(nonReactiveTypeName, project, requestedType.getResolveScope());
-            return matchesType.or(nonReactiveType::isAssignableFrom);
+        PsiClass requestedClass = PsiUtil.resolveClassInClassTypeOnly(requestedType);
+        String requestedTypeName = requestedClass == null ? null : requestedClass.getQualifiedName();
+        String synchronousTypeName = requestedTypeName == null ? null : reactiveTypes.getSynchronousTypeName(requestedTypeName);
+        if (synchronousTypeName != null) {
+            return matchesType.or(beanType -> InheritanceUtil.isInheritor(beanType, synchronousTypeName));
         } else {
             return matchesType;
         }
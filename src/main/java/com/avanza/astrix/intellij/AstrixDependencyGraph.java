@@ -0,0 +1,293 @@
+package com.avanza.astrix.intellij;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.LibraryOrderEntry;
+import com.intellij.openapi.roots.OrderEntry;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.FileBasedIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Which modules and libraries provide which beans, and which modules retrieve them.
+ * <p>
+ * Providers come straight from the {@link AstrixBeanDeclarationTable} and {@link AstrixLibraryBeanIndex}, and are only
+ * collected again once the bean declarations or the project roots change. Consumers of a bean are found through
+ * {@link AstrixBeanRetrievalIndex}, and the retrievals of every file are kept until the file, the bean declarations or
+ * the project roots change, so only changed files are analyzed again.
+ * <p>
+ * The retrievals are kept as smart pointers for as long as the graph is, so a graph should not outlive its user, such
+ * as the tool window. All methods require a read action.
+ */
+public class AstrixDependencyGraph {
+    private final Project project;
+    private final Map<VirtualFile, FileRetrievals> fileRetrievals = new ConcurrentHashMap<>();
+    private volatile Providers cachedProviders;
+
+    public AstrixDependencyGraph(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * The modules and libraries declaring beans, sorted by name.
+     */
+    public List<Provider> getProviders() {
+        AstrixBeanDeclarationTable declarationTable = AstrixBeanDeclarationCache.getInstance(project).getDeclarationTable();
+        declarationTable.update();
+        fileRetrievals.keySet().removeIf(file -> !file.isValid());
+        long declarationsModificationCount = declarationTable.getModificationCount();
+        long rootsModificationCount = ProjectRootModificationTracker.getInstance(project).getModificationCount();
+        Providers cached = cachedProviders;
+        if (cached != null &&
+                cached.declarationsModificationCount == declarationsModificationCount &&
+                cached.rootsModificationCount == rootsModificationCount) {
+            return cached.providers;
+        }
+
+        List<Provider> current = collectProviders(declarationTable);
+        cachedProviders = new Providers(current, declarationsModificationCount, rootsModificationCount);
+        return current;
+    }
+
+    /**
+     * Moves whenever {@link #getProviders()} finds the bean declarations changed, after which every retrieval may match
+     * differently.
+     */
+    public ModificationTracker getDeclarationsModificationTracker() {
+        return AstrixBeanDeclarationCache.getInstance(project).getDeclarationTable();
+    }
+
+    private List<Provider> collectProviders(AstrixBeanDeclarationTable declarationTable) {
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        Map<String, Set<AstrixBeanDescriptor>> moduleBeans = new TreeMap<>();
+        declarationTable.getBeanDeclarationsByFile().forEach((file, beanDeclarations) -> {
+            Module module = fileIndex.getModuleForFile(file);
+            if (module != null && !beanDeclarations.isEmpty()) {
+                Set<AstrixBeanDescriptor> beans = moduleBeans.computeIfAbsent(module.getName(), key -> new LinkedHashSet<>());
+                beanDeclarations.forEach(beanDeclaration -> beans.add(beanDeclaration.getDescriptor()));
+            }
+        });
+
+        Map<String, Set<AstrixBeanDescriptor>> libraryBeans = new TreeMap<>();
+        FileBasedIndex fileBasedIndex = FileBasedIndex.getInstance();
+        GlobalSearchScope allScope = GlobalSearchScope.allScope(project);
+        for (String beanTypeName : fileBasedIndex.getAllKeys(AstrixLibraryBeanIndex.NAME, project)) {
+            ProgressManager.checkCanceled();
+            fileBasedIndex.processValues(AstrixLibraryBeanIndex.NAME, beanTypeName, null, (file, libraryBeanDeclarations) -> {
+                Set<AstrixBeanDescriptor> beans = libraryBeans.computeIfAbsent(getLibraryName(file, fileIndex), key -> new LinkedHashSet<>());
+                libraryBeanDeclarations.forEach(libraryBeanDeclaration -> beans.add(AstrixBeanDescriptor.of(libraryBeanDeclaration)));
+                return true;
+            }, allScope);
+        }
+
+        List<Provider> providers = new ArrayList<>();
+        moduleBeans.forEach((name, beans) -> providers.add(new Provider(name, false, beans)));
+        libraryBeans.forEach((name, beans) -> providers.add(new Provider(name, true, beans)));
+        return unmodifiableList(providers);
+    }
+
+    /**
+     * The modules retrieving the bean, sorted by name.
+     */
+    public List<Consumer> getConsumers(AstrixBeanDescriptor bean) {
+        Map<String, List<SmartPsiElementPointer<PsiMethodCallExpression>>> retrievals = new TreeMap<>();
+        for (VirtualFile file : getRetrievalFiles(bean)) {
+            List<SmartPsiElementPointer<PsiMethodCallExpression>> fileRetrievals = getFileRetrievals(file).retrievals.getOrDefault(bean, emptyList());
+            if (!fileRetrievals.isEmpty()) {
+                retrievals.computeIfAbsent(getModuleName(file), key -> new ArrayList<>()).addAll(fileRetrievals);
+            }
+        }
+        List<Consumer> consumers = new ArrayList<>();
+        retrievals.forEach((moduleName, moduleRetrievals) -> consumers.add(new Consumer(moduleName, moduleRetrievals)));
+        return consumers;
+    }
+
+    /**
+     * The consumers of every retrieved bean, found by analyzing all files retrieving beans once.
+     */
+    public Map<AstrixBeanDescriptor, List<Consumer>> getAllConsumers() {
+        FileBasedIndex fileBasedIndex = FileBasedIndex.getInstance();
+        GlobalSearchScope projectScope = GlobalSearchScope.projectScope(project);
+        Set<VirtualFile> files = new LinkedHashSet<>();
+        for (String beanTypeName : fileBasedIndex.getAllKeys(AstrixBeanRetrievalIndex.NAME, project)) {
+            ProgressManager.checkCanceled();
+            files.addAll(fileBasedIndex.getContainingFiles(AstrixBeanRetrievalIndex.NAME, beanTypeName, projectScope));
+        }
+
+        Map<AstrixBeanDescriptor, Map<String, List<SmartPsiElementPointer<PsiMethodCallExpression>>>> retrievals = new HashMap<>();
+        for (VirtualFile file : files) {
+            String moduleName = getModuleName(file);
+            getFileRetrievals(file).retrievals.forEach((bean, fileRetrievals) ->
+                    retrievals.computeIfAbsent(bean, key -> new TreeMap<>()).computeIfAbsent(moduleName, key -> new ArrayList<>()).addAll(fileRetrievals));
+        }
+        Map<AstrixBeanDescriptor, List<Consumer>> consumers = new HashMap<>();
+        retrievals.forEach((bean, moduleRetrievals) -> consumers.put(bean, moduleRetrievals.entrySet().stream()
+                                                                                           .map(entry -> new Consumer(entry.getKey(), entry.getValue()))
+                                                                                           .collect(toList())));
+        return consumers;
+    }
+
+    /**
+     * The files that may retrieve the bean, including through a reactive type.
+     */
+    public Collection<VirtualFile> getRetrievalFiles(AstrixBeanDescriptor bean) {
+        FileBasedIndex fileBasedIndex = FileBasedIndex.getInstance();
+        GlobalSearchScope projectScope = GlobalSearchScope.projectScope(project);
+        String beanTypeName = StringUtil.getShortName(bean.getBeanTypeName());
+        Set<VirtualFile> files = new LinkedHashSet<>(fileBasedIndex.getContainingFiles(AstrixBeanRetrievalIndex.NAME, beanTypeName, projectScope));
+        for (String reactiveTypeName : AstrixReactiveTypes.getInstance(project).getReactiveTypeNames(beanTypeName)) {
+            files.addAll(fileBasedIndex.getContainingFiles(AstrixBeanRetrievalIndex.NAME, reactiveTypeName, projectScope));
+        }
+        return files;
+    }
+
+    private FileRetrievals getFileRetrievals(VirtualFile file) {
+        ProgressManager.checkCanceled();
+        PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+        if (psiFile == null) {
+            return FileRetrievals.EMPTY;
+        }
+        long modificationStamp = psiFile.getModificationStamp();
+        long declarationsModificationCount = AstrixBeanDeclarationCache.getInstance(project).getDeclarationTable().getModificationCount();
+        long rootsModificationCount = ProjectRootModificationTracker.getInstance(project).getModificationCount();
+        FileRetrievals cached = fileRetrievals.get(file);
+        if (cached != null &&
+                cached.modificationStamp == modificationStamp &&
+                cached.declarationsModificationCount == declarationsModificationCount &&
+                cached.rootsModificationCount == rootsModificationCount) {
+            return cached;
+        }
+
+        SmartPointerManager smartPointerManager = SmartPointerManager.getInstance(project);
+        Map<AstrixBeanDescriptor, List<SmartPsiElementPointer<PsiMethodCallExpression>>> retrievals = new HashMap<>();
+        AstrixFileAnalysis.of(psiFile).getBeanRetrievals().forEach((retrieval, beans) -> {
+            SmartPsiElementPointer<PsiMethodCallExpression> pointer = smartPointerManager.createSmartPsiElementPointer(retrieval);
+            beans.forEach(bean -> retrievals.computeIfAbsent(bean, key -> new ArrayList<>()).add(pointer));
+        });
+        FileRetrievals current = new FileRetrievals(retrievals, modificationStamp, declarationsModificationCount, rootsModificationCount);
+        fileRetrievals.put(file, current);
+        return current;
+    }
+
+    private String getModuleName(VirtualFile file) {
+        Module module = ProjectFileIndex.getInstance(project).getModuleForFile(file);
+        return module == null ? file.getPresentableName() : module.getName();
+    }
+
+    private static String getLibraryName(VirtualFile file, ProjectFileIndex fileIndex) {
+        for (OrderEntry orderEntry : fileIndex.getOrderEntriesForFile(file)) {
+            if (orderEntry instanceof LibraryOrderEntry) {
+                return orderEntry.getPresentableName();
+            }
+        }
+        VirtualFile root = fileIndex.getClassRootForFile(file);
+        return root == null ? file.getPresentableName() : root.getPresentableName();
+    }
+
+    /**
+     * A module or library declaring beans.
+     */
+    public static final class Provider {
+        private final String name;
+        private final boolean library;
+        private final List<AstrixBeanDescriptor> beans;
+
+        Provider(String name, boolean library, Collection<AstrixBeanDescriptor> beans) {
+            this.name = name;
+            this.library = library;
+            this.beans = beans.stream()
+                              .sorted(Comparator.comparing((AstrixBeanDescriptor bean) -> StringUtil.getShortName(bean.getBeanTypeName()))
+                                                .thenComparing(bean -> StringUtil.notNullize(bean.getQualifier())))
+                              .collect(toList());
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isLibrary() {
+            return library;
+        }
+
+        public List<AstrixBeanDescriptor> getBeans() {
+            return unmodifiableList(beans);
+        }
+    }
+
+    /**
+     * A module retrieving a bean.
+     */
+    public static final class Consumer {
+        private final String moduleName;
+        private final List<SmartPsiElementPointer<PsiMethodCallExpression>> retrievals;
+
+        Consumer(String moduleName, List<SmartPsiElementPointer<PsiMethodCallExpression>> retrievals) {
+            this.moduleName = moduleName;
+            this.retrievals = retrievals;
+        }
+
+        public String getModuleName() {
+            return moduleName;
+        }
+
+        public List<SmartPsiElementPointer<PsiMethodCallExpression>> getRetrievals() {
+            return unmodifiableList(retrievals);
+        }
+    }
+
+    private static final class Providers {
+        private final List<Provider> providers;
+        private final long declarationsModificationCount;
+        private final long rootsModificationCount;
+
+        Providers(List<Provider> providers, long declarationsModificationCount, long rootsModificationCount) {
+            this.providers = providers;
+            this.declarationsModificationCount = declarationsModificationCount;
+            this.rootsModificationCount = rootsModificationCount;
+        }
+    }
+
+    private static final class FileRetrievals {
+        static final FileRetrievals EMPTY = new FileRetrievals(new HashMap<>(), -1, -1, -1);
+
+        private final Map<AstrixBeanDescriptor, List<SmartPsiElementPointer<PsiMethodCallExpression>>> retrievals;
+        private final long modificationStamp;
+        private final long declarationsModificationCount;
+        private final long rootsModificationCount;
+
+        FileRetrievals(Map<AstrixBeanDescriptor, List<SmartPsiElementPointer<PsiMethodCallExpression>>> retrievals,
+                       long modificationStamp,
+                       long declarationsModificationCount,
+                       long rootsModificationCount) {
+            this.retrievals = retrievals;
+            this.modificationStamp = modificationStamp;
+            this.declarationsModificationCount = declarationsModificationCount;
+            this.rootsModificationCount = rootsModificationCount;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.avanza.astrix.intellij;
+
+import com.avanza.astrix.intellij.diagnostics.AstrixMetrics;
+import com.avanza.astrix.intellij.settings.AstrixSettings;
+import com.intellij.lang.java.JavaLanguage;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.JavaRecursiveElementWalkingVisitor;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.PsiReferenceExpression;
+import com.intellij.psi.PsiVariable;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.avanza.astrix.intellij.AstrixContextUtility.BEAN_RETRIEVAL_METHOD_NAMES;
+import static com.avanza.astrix.intellij.AstrixContextUtility.getTypeParameter;
+import static com.avanza.astrix.intellij.AstrixContextUtility.isAstrixBeanRetriever;
+import static com.avanza.astrix.intellij.AstrixContextUtility.isLibrary;
+import static com.avanza.astrix.intellij.AstrixContextUtility.isService;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Collections.unmodifiableSet;
+
+/**
+ * The bean retrievals and bean declarations of a single file, resolved once per change and shared by the line markers
+ * and the inspection.
+ * <p>
+ * An analysis is outdated by changes to the file, the bean declarations, the project roots and the settings. Only when
+ * a retrieval in the file takes its qualifier from a constant in another file, or retrieves a bean type that does not
+ * resolve, is it outdated by any Java change.
+ */
+public class AstrixFileAnalysis {
+    private static final Key<CachedValue<AstrixFileAnalysis>> FILE_ANALYSIS = Key.create("astrix.file.analysis");
+
+    private final Map<PsiMethodCallExpression, Collection<AstrixBeanDescriptor>> beanRetrievals;
+    private final Set<PsiMethod> beanDeclarations;
+
+    private AstrixFileAnalysis(Map<PsiMethodCallExpression, Collection<AstrixBeanDescriptor>> beanRetrievals, Set<PsiMethod> beanDeclarations) {
+        this.beanRetrievals = unmodifiableMap(beanRetrievals);
+        this.beanDeclarations = unmodifiableSet(beanDeclarations);
+    }
+
+    public static AstrixFileAnalysis of(@NotNull PsiFile file) {
+        Project project = file.getProject();
+        if (!DumbService.isDumb(project)) {
+            // the table only counts the changes it has been updated with
+            AstrixBeanDeclarationCache.getInstance(project).getDeclarationTable().update();
+        }
+        CachedValue<AstrixFileAnalysis> fileAnalysis = file.getUserData(FILE_ANALYSIS);
+        if (fileAnalysis == null) {
+            fileAnalysis = CachedValuesManager.getManager(project).createCachedValue(() -> analyze(file), false);
+            file.putUserData(FILE_ANALYSIS, fileAnalysis);
+        }
+        AstrixMetrics.getInstance().cacheAccess(AstrixMetrics.FILE_ANALYSIS_CACHE, fileAnalysis.hasUpToDateValue());
+        return fileAnalysis.getValue();
+    }
+
+    public Map<PsiMethodCallExpression, Collection<AstrixBeanDescriptor>> getBeanRetrievals() {
+        return beanRetrievals;
+    }
+
+    /**
+     * The declarations matching a bean retrieval, or {@code null} if the call does not retrieve a bean.
+     */
+    @Nullable
+    public Collection<AstrixBeanDescriptor> getBeanDeclarations(PsiMethodCallExpression psiMethodCallExpression) {
+        return beanRetrievals.get(psiMethodCallExpression);
+    }
+
+    public boolean isBeanDeclaration(PsiMethod method) {
+        return beanDeclarations.contains(method);
+    }
+
+    /**
+     * The bean declarations in the file, including those only provider classes in other files inherit.
+     */
+    public Set<PsiMethod> getDeclaredBeans() {
+        return beanDeclarations;
+    }
+
+    private static CachedValueProvider.Result<AstrixFileAnalysis> analyze(PsiFile file) {
+        Project project = file.getProject();
+        AstrixBeanDeclarationCache beanDeclarationCache = AstrixBeanDeclarationCache.getInstance(project);
+        boolean[] outdatedByJavaChanges = {false};
+        Map<PsiMethodCallExpression, Collection<AstrixBeanDescriptor>> beanRetrievals = new HashMap<>();
+        Set<PsiMethod> beanDeclarations = new HashSet<>();
+        List<PsiMethod> inheritableDeclarations = new ArrayList<>();
+        file.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
+                ProgressManager.checkCanceled();
+                super.visitMethodCallExpression(expression);
+
+                if (BEAN_RETRIEVAL_METHOD_NAMES.contains(expression.getMethodExpression().getReferenceName()) && isAstrixBeanRetriever(expression.resolveMethod())) {
+                    beanRetrievals.put(expression, beanDeclarationCache.findBeanDeclarations(expression.getArgumentList()));
+                    // a bean type that does not resolve yet may be added, and a qualifier constant changed, in any other file
+                    PsiExpression[] arguments = expression.getArgumentList().getExpressions();
+                    outdatedByJavaChanges[0] |= PsiUtil.resolveClassInClassTypeOnly(getTypeParameter(expression.getArgumentList())) == null ||
+                            arguments.length > 1 && refersToOtherFiles(arguments[1], file, new HashSet<>());
+                }
+            }
+
+            @Override
+            public void visitMethod(PsiMethod method) {
+                super.visitMethod(method);
+
+                if (AstrixContextUtility.isBeanDeclaration(method)) {
+                    beanDeclarations.add(method);
+                } else if (isService(method) || isLibrary(method)) {
+                    inheritableDeclarations.add(method);
+                }
+            }
+        });
+        if (!inheritableDeclarations.isEmpty()) {
+            Set<AstrixBeanDescriptor> inheritedDeclarations = beanDeclarationCache.getInheritedBeanDeclarations(file);
+            for (PsiMethod method : inheritableDeclarations) {
+                if (inheritedDeclarations.contains(AstrixBeanDescriptor.of(method))) {
+                    beanDeclarations.add(method);
+                }
+            }
+        }
+        List<Object> dependencies = new ArrayList<>(List.of(file,
+                                                            beanDeclarationCache.getDeclarationTable(),
+                                                            ProjectRootModificationTracker.getInstance(project),
+                                                            AstrixSettings.getInstance(project).getModificationTracker()));
+        if (outdatedByJavaChanges[0]) {
+            dependencies.add(PsiModificationTracker.getInstance(project).forLanguage(JavaLanguage.INSTANCE));
+        }
+        return CachedValueProvider.Result.create(new AstrixFileAnalysis(beanRetrievals, beanDeclarations), dependencies);
+    }
+
+    private static boolean refersToOtherFiles(@Nullable PsiElement element, PsiFile file, Set<PsiVariable> visited) {
+        for (PsiReferenceExpression reference : PsiTreeUtil.collectElementsOfType(element, PsiReferenceExpression.class)) {
+            PsiElement target = reference.resolve();
+            if (target != null && target.getContainingFile() != file) {
+                return true;
+            }
+            if (target instanceof PsiVariable && visited.add((PsiVariable) target) && refersToOtherFiles(((PsiVariable) target).getInitializer(), file, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,229 @@
+package com.avanza.astrix.intellij;
+
+import com.intellij.ide.highlighter.JavaClassFileType;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.DefaultFileTypeSpecificInputFilter;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.org.objectweb.asm.AnnotationVisitor;
+import org.jetbrains.org.objectweb.asm.ClassReader;
+import org.jetbrains.org.objectweb.asm.ClassVisitor;
+import org.jetbrains.org.objectweb.asm.MethodVisitor;
+import org.jetbrains.org.objectweb.asm.Opcodes;
+import org.jetbrains.org.objectweb.asm.Type;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.avanza.astrix.intellij.AstrixContextUtility.API_PROVIDER_FQN;
+import static com.avanza.astrix.intellij.AstrixContextUtility.LIBRARY_FQN;
+import static com.avanza.astrix.intellij.AstrixContextUtility.QUALIFIER_FQN;
+import static com.avanza.astrix.intellij.AstrixContextUtility.SERVICE_FQN;
+import static com.intellij.psi.PsiAnnotation.DEFAULT_REFERENCED_METHOD_NAME;
+import static java.util.Collections.emptyMap;
+
+/**
+ * Indexes the bean declarations of compiled {@code @AstrixApiProvider} classes, as descriptors, by the qualified name
+ * of the erased bean types they declare.
+ * <p>
+ * Class files are read with ASM, so neither stubs nor decompiled constant expressions are needed to match library
+ * beans. Only class files referring to {@code @AstrixApiProvider} in their bytes are read at all. Indexed data is
+ * shared by content, so a jar is only scanned again when its content changes.
+ */
+public class AstrixLibraryBeanIndex extends FileBasedIndexExtension<String, List<AstrixBeanDescriptor>> {
+    public static final ID<String, List<AstrixBeanDescriptor>> NAME = ID.create("com.avanza.astrix.intellij.AstrixLibraryBeanIndex");
+
+    private static final String API_PROVIDER_DESCRIPTOR = toDescriptor(API_PROVIDER_FQN);
+    private static final String SERVICE_DESCRIPTOR = toDescriptor(SERVICE_FQN);
+    private static final String LIBRARY_DESCRIPTOR = toDescriptor(LIBRARY_FQN);
+    private static final String QUALIFIER_DESCRIPTOR = toDescriptor(QUALIFIER_FQN);
+    private static final byte[] API_PROVIDER_DESCRIPTOR_BYTES = API_PROVIDER_DESCRIPTOR.getBytes(StandardCharsets.US_ASCII);
+
+    @NotNull
+    @Override
+    public ID<String, List<AstrixBeanDescriptor>> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, List<AstrixBeanDescriptor>, FileContent> getIndexer() {
+        return inputData -> {
+            byte[] content = inputData.getContent();
+            // nearly all class files are no providers, and those that are name the annotation type in their constant pool
+            if (!contains(content, API_PROVIDER_DESCRIPTOR_BYTES)) {
+                return emptyMap();
+            }
+            try {
+                return indexClassFile(content);
+            } catch (RuntimeException e) {
+                // malformed class files are simply not indexed
+                return emptyMap();
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<List<AstrixBeanDescriptor>> getValueExternalizer() {
+        return new DataExternalizer<>() {
+            @Override
+            public void save(@NotNull DataOutput out, List<AstrixBeanDescriptor> value) throws IOException {
+                out.writeInt(value.size());
+                for (AstrixBeanDescriptor descriptor : value) {
+                    IOUtil.writeUTF(out, descriptor.getProviderName());
+                    IOUtil.writeUTF(out, descriptor.getMethodName());
+                    IOUtil.writeUTF(out, descriptor.getBeanTypeName());
+                    out.writeBoolean(descriptor.getQualifier() != null);
+                    if (descriptor.getQualifier() != null) {
+                        IOUtil.writeUTF(out, descriptor.getQualifier());
+                    }
+                    out.writeBoolean(descriptor.isService());
+                }
+            }
+
+            @Override
+            public List<AstrixBeanDescriptor> read(@NotNull DataInput in) throws IOException {
+                int size = in.readInt();
+                List<AstrixBeanDescriptor> value = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    String providerName = IOUtil.readUTF(in);
+                    String methodName = IOUtil.readUTF(in);
+                    String beanTypeName = IOUtil.readUTF(in);
+                    String qualifier = in.readBoolean() ? IOUtil.readUTF(in) : null;
+                    value.add(AstrixBeanDescriptor.create(providerName, methodName, beanTypeName, qualifier, in.readBoolean()));
+                }
+                return value;
+            }
+        };
+    }
+
+    @Override
+    public int getVersion() {
+        return 2;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(JavaClassFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    private static Map<String, List<AstrixBeanDescriptor>> indexClassFile(byte[] content) {
+        Map<String, List<AstrixBeanDescriptor>> result = new HashMap<>();
+        new ClassReader(content).accept(new ClassVisitor(Opcodes.API_VERSION) {
+            private String providerName;
+            private boolean apiProvider;
+
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                providerName = Type.getObjectType(name).getClassName().replace('$', '.');
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                apiProvider |= API_PROVIDER_DESCRIPTOR.equals(descriptor);
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String methodName, String descriptor, String signature, String[] exceptions) {
+                Type returnType = Type.getReturnType(descriptor);
+                if (!apiProvider || returnType.getSort() != Type.OBJECT) {
+                    return null;
+                }
+                return new BeanDeclarationVisitor(providerName, methodName, returnType.getClassName().replace('$', '.'), result);
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return result;
+    }
+
+    private static boolean contains(byte[] content, byte[] pattern) {
+        byte first = pattern[0];
+        int last = content.length - pattern.length;
+        for (int i = 0; i <= last; i++) {
+            if (content[i] != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < pattern.length && content[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String toDescriptor(String fqn) {
+        return "L" + fqn.replace('.', '/') + ";";
+    }
+
+    private static class BeanDeclarationVisitor extends MethodVisitor {
+        private final String providerName;
+        private final String methodName;
+        private final String beanTypeName;
+        private final Map<String, List<AstrixBeanDescriptor>> result;
+        private boolean service;
+        private boolean library;
+        private String qualifier;
+
+        BeanDeclarationVisitor(String providerName, String methodName, String beanTypeName, Map<String, List<AstrixBeanDescriptor>> result) {
+            super(Opcodes.API_VERSION);
+            this.providerName = providerName;
+            this.methodName = methodName;
+            this.beanTypeName = beanTypeName;
+            this.result = result;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            service |= SERVICE_DESCRIPTOR.equals(descriptor);
+            library |= LIBRARY_DESCRIPTOR.equals(descriptor);
+            if (!QUALIFIER_DESCRIPTOR.equals(descriptor)) {
+                return null;
+            }
+            return new AnnotationVisitor(Opcodes.API_VERSION) {
+                @Override
+                public void visit(String name, Object value) {
+                    if (DEFAULT_REFERENCED_METHOD_NAME.equals(name) && value instanceof String) {
+                        qualifier = (String) value;
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void visitEnd() {
+            if (service || library) {
+                result.computeIfAbsent(beanTypeName, key -> new ArrayList<>())
+                      .add(AstrixBeanDescriptor.create(providerName, methodName, beanTypeName, qualifier, service));
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.avanza.astrix.intellij;
+
+import com.intellij.codeInsight.daemon.LineMarkerInfo;
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.progress.ProgressIndicatorProvider;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.psi.PsiElement;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+final class AstrixLineMarkers {
+
+    private AstrixLineMarkers() {
+    }
+
+    /**
+     * Creates the line markers of the elements concurrently. Every worker thread buffers its own markers, and the
+     * buffers are added to the result once all elements are done, so workers never wait for each other.
+     */
+    static void collectConcurrently(List<? extends PsiElement> elements,
+                                    Function<? super PsiElement, ? extends Optional<? extends LineMarkerInfo<?>>> lineMarker,
+                                    Collection<? super LineMarkerInfo<?>> result) {
+        Map<Thread, List<LineMarkerInfo<?>>> buffers = new ConcurrentHashMap<>();
+        JobLauncher.getInstance().invokeConcurrentlyUnderProgress(elements, ProgressIndicatorProvider.getGlobalProgressIndicator(), element -> {
+            ProgressManager.checkCanceled();
+            lineMarker.apply(element).ifPresent(info -> buffers.computeIfAbsent(Thread.currentThread(), thread -> new ArrayList<>()).add(info));
+            return true;
+        });
+        ProgressManager.checkCanceled();
+        buffers.values().forEach(result::addAll);
+    }
+}
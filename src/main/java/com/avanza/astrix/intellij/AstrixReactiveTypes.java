@@ -0,0 +1,74 @@
+package com.avanza.astrix.intellij;
+
+import com.avanza.astrix.intellij.settings.AstrixSettings;
+import com.intellij.lang.java.JavaLanguage;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.util.containers.ConcurrentFactoryMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.intellij.openapi.util.text.StringUtil.trimEnd;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Maps reactive bean types, e.g. {@code MyServiceAsync}, to their synchronous counterpart.
+ * <p>
+ * Results, including types without a counterpart, are cached until Java structure, the project roots or the
+ * configured reactive postfixes change.
+ */
+public class AstrixReactiveTypes {
+    private final Project project;
+
+    public AstrixReactiveTypes(Project project) {
+        this.project = project;
+    }
+
+    public static AstrixReactiveTypes getInstance(Project project) {
+        return project.getService(AstrixReactiveTypes.class);
+    }
+
+    /**
+     * The qualified name of the synchronous counterpart of a reactive type, or {@code null} if there is none.
+     */
+    @Nullable
+    public String getSynchronousTypeName(@NotNull String reactiveTypeName) {
+        return getSynchronousTypeNames().get(reactiveTypeName).orElse(null);
+    }
+
+    /**
+     * Names the reactive counterparts of a type could have, e.g. {@code MyServiceAsync} for {@code MyService}.
+     */
+    public Collection<String> getReactiveTypeNames(@NotNull String typeName) {
+        return AstrixSettings.getInstance(project).getReactivePostfixes().stream()
+                             .map(postfix -> typeName + postfix)
+                             .collect(toList());
+    }
+
+    private Map<String, Optional<String>> getSynchronousTypeNames() {
+        return CachedValuesManager.getManager(project).getCachedValue(project, () -> {
+            Collection<String> reactivePostfixes = AstrixSettings.getInstance(project).getReactivePostfixes();
+            JavaPsiFacade javaPsiFacade = JavaPsiFacade.getInstance(project);
+            GlobalSearchScope allScope = GlobalSearchScope.allScope(project);
+            Map<String, Optional<String>> synchronousTypeNames = ConcurrentFactoryMap.createMap(
+                    reactiveTypeName -> reactivePostfixes.stream()
+                                                         .filter(postfix -> reactiveTypeName.endsWith(postfix) && reactiveTypeName.length() > postfix.length())
+                                                         .map(postfix -> trimEnd(reactiveTypeName, postfix))
+                                                         .filter(typeName -> javaPsiFacade.findClass(typeName, allScope) != null)
+                                                         .findFirst());
+            return CachedValueProvider.Result.create(synchronousTypeNames,
+                                                     PsiModificationTracker.getInstance(project).forLanguage(JavaLanguage.INSTANCE),
+                                                     ProjectRootModificationTracker.getInstance(project),
+                                                     AstrixSettings.getInstance(project).getModificationTracker());
+        });
+    }
+}
@@ -0,0 +1,123 @@
+package com.avanza.astrix.intellij;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.FileBasedIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Validation of all bean retrievals in a scope, shared by {@link AstrixContextGetterGlobalInspector} and
+ * {@link AstrixValidateStarter}.
+ * <p>
+ * Only files found in {@link AstrixBeanRetrievalIndex} are visited. The bean lookup of every distinct module scope
+ * involved is built up front, after which the files are validated. Both steps hand their tasks to the caller to run
+ * concurrently, each task in a read action of its own.
+ */
+final class AstrixRetrievalValidation {
+    private final Project project;
+    private final List<VirtualFile> files;
+
+    private AstrixRetrievalValidation(Project project, List<VirtualFile> files) {
+        this.project = project;
+        this.files = files;
+    }
+
+    static AstrixRetrievalValidation create(AnalysisScope scope, Project project) {
+        return new AstrixRetrievalValidation(project, ReadAction.compute(() -> findRetrievalFiles(scope, project)));
+    }
+
+    List<VirtualFile> getFiles() {
+        return files;
+    }
+
+    /**
+     * Builds the bean lookups of the module scopes of the files, returning the number of distinct scopes.
+     */
+    int buildBeanLookups(Consumer<List<Runnable>> runConcurrently) {
+        Set<Pair<Module, Boolean>> moduleScopes = ReadAction.compute(this::getModuleScopes);
+        AstrixBeanDeclarationCache beanDeclarationCache = AstrixBeanDeclarationCache.getInstance(project);
+        List<Runnable> tasks = new ArrayList<>(moduleScopes.size());
+        for (Pair<Module, Boolean> moduleScope : moduleScopes) {
+            tasks.add(() -> ReadAction.run(() -> beanDeclarationCache.getBeanLookup(moduleScope.getFirst(), moduleScope.getSecond())));
+        }
+        runConcurrently.accept(tasks);
+        return moduleScopes.size();
+    }
+
+    /**
+     * Passes every retrieval without a bean declaration to the listener, from the read action of its file, returning
+     * the number of retrievals validated.
+     */
+    long validate(Consumer<List<Runnable>> runConcurrently, UndeclaredRetrievalListener listener) {
+        PsiManager psiManager = PsiManager.getInstance(project);
+        LongAdder beanRetrievals = new LongAdder();
+        List<Runnable> tasks = new ArrayList<>(files.size());
+        for (VirtualFile file : files) {
+            tasks.add(() -> ReadAction.run(() -> {
+                PsiFile psiFile = file.isValid() ? psiManager.findFile(file) : null;
+                if (psiFile == null) {
+                    return;
+                }
+                Map<PsiMethodCallExpression, Collection<AstrixBeanDescriptor>> fileRetrievals = AstrixFileAnalysis.of(psiFile).getBeanRetrievals();
+                beanRetrievals.add(fileRetrievals.size());
+                fileRetrievals.forEach((retrieval, beanDeclarations) -> {
+                    if (beanDeclarations.isEmpty()) {
+                        listener.undeclaredRetrieval(psiFile, retrieval);
+                    }
+                });
+            }));
+        }
+        runConcurrently.accept(tasks);
+        return beanRetrievals.sum();
+    }
+
+    private static List<VirtualFile> findRetrievalFiles(AnalysisScope scope, Project project) {
+        FileBasedIndex fileBasedIndex = FileBasedIndex.getInstance();
+        GlobalSearchScope projectScope = GlobalSearchScope.projectScope(project);
+        Set<VirtualFile> files = new LinkedHashSet<>();
+        for (String beanTypeName : fileBasedIndex.getAllKeys(AstrixBeanRetrievalIndex.NAME, project)) {
+            for (VirtualFile file : fileBasedIndex.getContainingFiles(AstrixBeanRetrievalIndex.NAME, beanTypeName, projectScope)) {
+                if (scope.contains(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+    private Set<Pair<Module, Boolean>> getModuleScopes() {
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        AstrixScopeRegistry scopeRegistry = AstrixScopeRegistry.getInstance(project);
+        Map<AstrixScopeRegistry.ScopeFingerprint, Pair<Module, Boolean>> moduleScopes = new LinkedHashMap<>();
+        for (VirtualFile file : files) {
+            Module module = fileIndex.getModuleForFile(file);
+            if (module != null) {
+                boolean includeTests = fileIndex.isInTestSourceContent(file);
+                moduleScopes.putIfAbsent(scopeRegistry.getFingerprint(module, includeTests), Pair.create(module, includeTests));
+            }
+        }
+        return new LinkedHashSet<>(moduleScopes.values());
+    }
+
+    interface UndeclaredRetrievalListener {
+        void undeclaredRetrieval(PsiFile file, PsiMethodCallExpression retrieval);
+    }
+}
@@ -0,0 +1,172 @@
+package com.avanza.astrix.intellij;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.OrderEnumerator;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.util.indexing.FileBasedIndex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Groups module runtime scopes that see the same bean declarations.
+ * <p>
+ * A {@link ScopeFingerprint} is the set of source and library roots in a module's runtime dependency closure that
+ * contain provider classes. Modules with equal fingerprints share one {@link AstrixBeanLookup}, however many of them
+ * there are.
+ */
+public class AstrixScopeRegistry {
+    private static final Key<CachedValue<ScopeFingerprint>> PRODUCTION_FINGERPRINT = Key.create("astrix.scope.fingerprint.production");
+    private static final Key<CachedValue<ScopeFingerprint>> TEST_FINGERPRINT = Key.create("astrix.scope.fingerprint.test");
+    private static final Key<CachedValue<Optional<GlobalSearchScope>>> PRODUCTION_DEPENDENTS_SCOPE = Key.create("astrix.scope.dependents.production");
+    private static final Key<CachedValue<Optional<GlobalSearchScope>>> TEST_DEPENDENTS_SCOPE = Key.create("astrix.scope.dependents.test");
+
+    private final Project project;
+
+    public AstrixScopeRegistry(Project project) {
+        this.project = project;
+    }
+
+    public static AstrixScopeRegistry getInstance(Project project) {
+        return project.getService(AstrixScopeRegistry.class);
+    }
+
+    public ScopeFingerprint getFingerprint(@NotNull Module module, boolean includeTests) {
+        AstrixBeanDeclarationTable declarationTable = AstrixBeanDeclarationCache.getInstance(project).getDeclarationTable();
+        declarationTable.update();
+        return CachedValuesManager.getManager(project).getCachedValue(module, includeTests ? TEST_FINGERPRINT : PRODUCTION_FINGERPRINT, () -> {
+            OrderEnumerator enumerator = OrderEnumerator.orderEntries(module).recursively().runtimeOnly().withoutSdk();
+            if (!includeTests) {
+                enumerator = enumerator.productionOnly();
+            }
+            Set<VirtualFile> providerRoots = getProviderRoots();
+            Set<VirtualFile> roots = new HashSet<>();
+            for (VirtualFile root : enumerator.getSourceRoots()) {
+                if (providerRoots.contains(root)) {
+                    roots.add(root);
+                }
+            }
+            for (VirtualFile root : enumerator.librariesOnly().getClassesRoots()) {
+                if (providerRoots.contains(root)) {
+                    roots.add(root);
+                }
+            }
+            return CachedValueProvider.Result.create(new ScopeFingerprint(roots, module, includeTests),
+                                                     declarationTable,
+                                                     ProjectRootModificationTracker.getInstance(project));
+        }, false);
+    }
+
+    /**
+     * The union of the runtime scopes of all modules that can retrieve beans declared by the element, or {@code null} if
+     * no module can.
+     */
+    @Nullable
+    public GlobalSearchScope getDependentsScope(@NotNull PsiElement element) {
+        PsiFile file = element.getContainingFile();
+        VirtualFile virtualFile = file == null ? null : file.getVirtualFile();
+        if (virtualFile == null) {
+            return null;
+        }
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        Module module = fileIndex.getModuleForFile(virtualFile);
+        if (module == null) {
+            return getDependentsScope(scope -> scope.contains(virtualFile));
+        }
+        boolean testSources = fileIndex.isInTestSourceContent(virtualFile);
+        return CachedValuesManager.getManager(project).getCachedValue(module, testSources ? TEST_DEPENDENTS_SCOPE : PRODUCTION_DEPENDENTS_SCOPE, () -> {
+            GlobalSearchScope dependentsScope = getDependentsScope(scope -> scope.isSearchInModuleContent(module, testSources));
+            return CachedValueProvider.Result.create(Optional.ofNullable(dependentsScope), ProjectRootModificationTracker.getInstance(project));
+        }, false).orElse(null);
+    }
+
+    @Nullable
+    private GlobalSearchScope getDependentsScope(Predicate<GlobalSearchScope> containsDeclaration) {
+        List<GlobalSearchScope> scopes = new ArrayList<>();
+        for (Module module : ModuleManager.getInstance(project).getModules()) {
+            GlobalSearchScope scope = module.getModuleRuntimeScope(true);
+            if (containsDeclaration.test(scope)) {
+                scopes.add(scope);
+            }
+        }
+        return scopes.isEmpty() ? null : GlobalSearchScope.union(scopes);
+    }
+
+    private Set<VirtualFile> getProviderRoots() {
+        return CachedValuesManager.getManager(project).getCachedValue(project, () -> {
+            AstrixBeanDeclarationTable declarationTable = AstrixBeanDeclarationCache.getInstance(project).getDeclarationTable();
+            ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+            Set<VirtualFile> providerRoots = new HashSet<>();
+            for (VirtualFile file : declarationTable.getProviderFiles()) {
+                VirtualFile root = fileIndex.getSourceRootForFile(file);
+                if (root != null) {
+                    providerRoots.add(root);
+                }
+            }
+            FileBasedIndex fileBasedIndex = FileBasedIndex.getInstance();
+            GlobalSearchScope librariesScope = GlobalSearchScope.allScope(project);
+            for (String beanTypeName : fileBasedIndex.getAllKeys(AstrixLibraryBeanIndex.NAME, project)) {
+                for (VirtualFile file : fileBasedIndex.getContainingFiles(AstrixLibraryBeanIndex.NAME, beanTypeName, librariesScope)) {
+                    VirtualFile root = fileIndex.getClassRootForFile(file);
+                    if (root != null) {
+                        providerRoots.add(root);
+                    }
+                }
+            }
+            return CachedValueProvider.Result.create(providerRoots, declarationTable, ProjectRootModificationTracker.getInstance(project));
+        });
+    }
+
+    /**
+     * Equal for all module scopes that see the same provider roots. The module it was first computed for is kept to
+     * create the shared scope, so nothing computed for the shared scope may depend on the other roots of that module.
+     */
+    public static final class ScopeFingerprint {
+        private final Set<VirtualFile> providerRoots;
+        private final Module module;
+        private final boolean includeTests;
+
+        ScopeFingerprint(Set<VirtualFile> providerRoots, Module module, boolean includeTests) {
+            this.providerRoots = providerRoots;
+            this.module = module;
+            this.includeTests = includeTests;
+        }
+
+        GlobalSearchScope createScope() {
+            return module.getModuleRuntimeScope(includeTests);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ScopeFingerprint)) {
+                return false;
+            }
+            return providerRoots.equals(((ScopeFingerprint) o).providerRoots);
+        }
+
+        @Override
+        public int hashCode() {
+            return providerRoots.hashCode();
+        }
+    }
+}
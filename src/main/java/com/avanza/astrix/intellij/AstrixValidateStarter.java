@@ -0,0 +1,214 @@
+package com.avanza.astrix.intellij;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.ide.impl.ProjectUtil;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ApplicationStarter;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.avanza.astrix.intellij.AstrixContextGetterInspector.NO_BEAN_DECLARATION_FOUND;
+
+/**
+ * Validates all bean retrievals of a project without a GUI, e.g. in a CI pipeline.
+ * <p>
+ * Usage: {@code idea astrix-validate <project path> [--output <report.json>] [--threads <n>]}
+ * <p>
+ * Writes a JSON report and exits with 0 if every retrieval has a declaration, 1 if any does not and 2 on errors.
+ */
+public class AstrixValidateStarter implements ApplicationStarter {
+    private static final int EXIT_OK = 0;
+    private static final int EXIT_FAILURES = 1;
+    private static final int EXIT_ERROR = 2;
+
+    @Override
+    public String getCommandName() {
+        return "astrix-validate";
+    }
+
+    @Override
+    public int getRequiredModality() {
+        return NOT_IN_EDT;
+    }
+
+    @Override
+    public void main(@NotNull List<String> args) {
+        int exitCode;
+        try {
+            exitCode = validate(args.subList(1, args.size()));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: astrix-validate <project path> [--output <report.json>] [--threads <n>]");
+            exitCode = EXIT_ERROR;
+        } catch (Exception e) {
+            e.printStackTrace();
+            exitCode = EXIT_ERROR;
+        }
+        System.exit(exitCode);
+    }
+
+    private int validate(List<String> args) throws Exception {
+        Path projectPath = null;
+        Path output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if ("--output".equals(arg) && i + 1 < args.size()) {
+                output = Path.of(args.get(++i));
+            } else if ("--threads".equals(arg) && i + 1 < args.size()) {
+                threads = Integer.parseInt(args.get(++i));
+            } else if (projectPath == null && !arg.startsWith("--")) {
+                projectPath = Path.of(arg).toAbsolutePath();
+            } else {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+        }
+        if (projectPath == null || threads < 1) {
+            throw new IllegalArgumentException("A project path and a positive number of threads are required");
+        }
+
+        Path projectDirectory = projectPath;
+        Report report = new Report(projectPath.toString());
+
+        long start = System.nanoTime();
+        Project project = ProjectUtil.openOrImport(projectPath, null, false);
+        if (project == null) {
+            throw new IllegalArgumentException("Unable to open project: " + projectPath);
+        }
+        start = report.time("openProject", start);
+
+        try {
+            DumbService.getInstance(project).waitForSmartMode();
+            start = report.time("indexing", start);
+
+            AstrixRetrievalValidation validation = AstrixRetrievalValidation.create(new AnalysisScope(project), project);
+            start = report.time("findRetrievalFiles", start);
+
+            int moduleScopes;
+            ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Astrix Validation", threads);
+            try {
+                Consumer<List<Runnable>> runConcurrently = tasks -> runAll(tasks, executor);
+                moduleScopes = validation.buildBeanLookups(runConcurrently);
+                start = report.time("beanDeclarations", start);
+
+                Queue<Failure> failures = new ConcurrentLinkedQueue<>();
+                report.beanRetrievals = validation.validate(runConcurrently, (file, retrieval) -> failures.add(createFailure(file, retrieval, projectDirectory, project)));
+                report.failures.addAll(failures);
+                report.time("validation", start);
+            } finally {
+                executor.shutdownNow();
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            report.statistics.put("files", (long) validation.getFiles().size());
+            report.statistics.put("moduleScopes", (long) moduleScopes);
+            report.statistics.put("failures", (long) report.failures.size());
+        } finally {
+            ApplicationManager.getApplication().invokeAndWait(() -> ProjectManager.getInstance().closeAndDispose(project));
+        }
+
+        writeReport(report, output);
+        return report.failures.isEmpty() ? EXIT_OK : EXIT_FAILURES;
+    }
+
+    private static Failure createFailure(PsiFile file, PsiMethodCallExpression retrieval, Path projectPath, Project project) {
+        Document document = PsiDocumentManager.getInstance(project).getDocument(file);
+        String path = projectPath.relativize(Path.of(file.getVirtualFile().getPath())).toString();
+        int offset = retrieval.getArgumentList().getTextOffset();
+        int line = document == null ? 0 : document.getLineNumber(offset);
+        int column = document == null ? 0 : offset - document.getLineStartOffset(line);
+        return new Failure(path, line + 1, column + 1, retrieval.getText(), NO_BEAN_DECLARATION_FOUND);
+    }
+
+    /**
+     * Runs the tasks on the executor and waits for all of them, rethrowing the first failure.
+     */
+    private static void runAll(List<Runnable> tasks, ExecutorService executor) {
+        List<Future<?>> futures = new ArrayList<>(tasks.size());
+        for (Runnable task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static void writeReport(Report report, Path output) throws IOException {
+        Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+        if (output == null) {
+            System.out.println(gson.toJson(report));
+        } else {
+            try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                gson.toJson(report, writer);
+            }
+        }
+    }
+
+    @SuppressWarnings({"unused", "FieldCanBeLocal"})
+    private static class Report {
+        private final String project;
+        private final List<Failure> failures = new ArrayList<>();
+        private final Map<String, Long> statistics = new LinkedHashMap<>();
+        private final Map<String, Long> timingsMillis = new LinkedHashMap<>();
+        private long beanRetrievals;
+
+        Report(String project) {
+            this.project = project;
+        }
+
+        long time(String phase, long start) {
+            long now = System.nanoTime();
+            timingsMillis.put(phase, TimeUnit.NANOSECONDS.toMillis(now - start));
+            return now;
+        }
+    }
+
+    @SuppressWarnings({"unused", "FieldCanBeLocal"})
+    private static class Failure {
+        private final String file;
+        private final int line;
+        private final int column;
+        private final String text;
+        private final String message;
+
+        Failure(String file, int line, int column, String text, String message) {
+            this.file = file;
+            this.line = line;
+            this.column = column;
+            this.text = text;
+            this.message = message;
+        }
+    }
+}
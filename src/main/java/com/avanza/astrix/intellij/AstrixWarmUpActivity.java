@@ -0,0 +1,119 @@
+package com.avanza.astrix.intellij;
+
+import com.avanza.astrix.intellij.settings.AstrixSettings;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.startup.StartupActivity;
+import com.intellij.openapi.util.Pair;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.concurrency.CancellablePromise;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Builds the bean declaration table and the bean lookup of every module scope in the background once indexing has
+ * finished, so the first file opened does not pay for it.
+ * <p>
+ * The lookups are built as non-blocking read actions on a few threads, which give way to any write action and are
+ * restarted afterwards. Can be turned off in Settings | Tools | Astrix.
+ */
+public class AstrixWarmUpActivity implements StartupActivity.Background {
+    private static final int MAX_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int POLL_MILLIS = 100;
+
+    @Override
+    public void runActivity(@NotNull Project project) {
+        if (ApplicationManager.getApplication().isHeadlessEnvironment() || !AstrixSettings.getInstance(project).isWarmUpOnStartup()) {
+            return;
+        }
+        DumbService.getInstance(project).runWhenSmart(() -> {
+            if (!project.isDisposed()) {
+                ProgressManager.getInstance().run(new WarmUpTask(project));
+            }
+        });
+    }
+
+    private static final class WarmUpTask extends Task.Backgroundable {
+
+        WarmUpTask(Project project) {
+            super(project, "Preparing Astrix bean declarations", true);
+        }
+
+        @Override
+        public void run(@NotNull ProgressIndicator indicator) {
+            Project project = getProject();
+            AstrixBeanDeclarationCache beanDeclarationCache = AstrixBeanDeclarationCache.getInstance(project);
+            indicator.setIndeterminate(false);
+            indicator.setText2("Bean declarations");
+            ReadAction.nonBlocking(() -> beanDeclarationCache.getDeclarationTable().update())
+                      .inSmartMode(project)
+                      .wrapProgress(indicator)
+                      .expireWith(beanDeclarationCache)
+                      .executeSynchronously();
+
+            List<Pair<Module, Boolean>> moduleScopes = ReadAction.compute(() -> getModuleScopes(project));
+            Executor executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Astrix Warm-up", MAX_THREADS);
+            List<CancellablePromise<?>> lookups = new ArrayList<>();
+            for (Pair<Module, Boolean> moduleScope : moduleScopes) {
+                lookups.add(ReadAction.nonBlocking(() -> beanDeclarationCache.getBeanLookup(moduleScope.getFirst(), moduleScope.getSecond()))
+                                      .inSmartMode(project)
+                                      .expireWhen(() -> moduleScope.getFirst().isDisposed())
+                                      .expireWith(beanDeclarationCache)
+                                      .submit(executor));
+            }
+            try {
+                for (int i = 0; i < lookups.size(); i++) {
+                    indicator.setText2(moduleScopes.get(i).getFirst().getName());
+                    awaitLookup(lookups.get(i), indicator);
+                    indicator.setFraction((double) (i + 1) / lookups.size());
+                }
+            } catch (ProcessCanceledException e) {
+                lookups.forEach(CancellablePromise::cancel);
+                throw e;
+            }
+        }
+
+        private static void awaitLookup(CancellablePromise<?> lookup, ProgressIndicator indicator) {
+            while (true) {
+                indicator.checkCanceled();
+                try {
+                    lookup.blockingGet(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (TimeoutException e) {
+                    // still building, check for cancellation again
+                } catch (ExecutionException | CancellationException e) {
+                    // a module scope that could not be prepared is built on first use instead
+                    return;
+                }
+            }
+        }
+
+        private static List<Pair<Module, Boolean>> getModuleScopes(Project project) {
+            List<Pair<Module, Boolean>> moduleScopes = new ArrayList<>();
+            for (Module module : ModuleManager.getInstance(project).getModules()) {
+                moduleScopes.add(Pair.create(module, false));
+                ModuleRootManager rootManager = ModuleRootManager.getInstance(module);
+                if (rootManager.getSourceRoots(true).length > rootManager.getSourceRoots(false).length) {
+                    moduleScopes.add(Pair.create(module, true));
+                }
+            }
+            return moduleScopes;
+        }
+    }
+}
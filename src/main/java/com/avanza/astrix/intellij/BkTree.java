@@ -0,0 +1,87 @@
+package com.avanza.astrix.intellij;
+
+import com.intellij.util.text.EditDistance;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Burkhard-Keller tree of words by case insensitive Levenshtein distance. Finding the words within a distance only
+ * visits the subtrees the triangle inequality cannot rule out. Words differing only in case share a node.
+ */
+final class BkTree {
+    private Node root;
+
+    void add(String word) {
+        if (root == null) {
+            root = new Node(word);
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = distance(node.getWord(), word);
+            if (distance == 0) {
+                if (!node.words.contains(word)) {
+                    node.words.add(word);
+                }
+                return;
+            }
+            Node child = node.children.get(distance);
+            if (child == null) {
+                node.children.put(distance, new Node(word));
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * The words within the distance of the word, closest first.
+     */
+    List<String> find(String word, int maxDistance) {
+        List<List<String>> wordsByDistance = new ArrayList<>();
+        for (int i = 0; i <= maxDistance; i++) {
+            wordsByDistance.add(new ArrayList<>());
+        }
+        Deque<Node> nodes = new ArrayDeque<>();
+        if (root != null) {
+            nodes.push(root);
+        }
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            int distance = distance(node.getWord(), word);
+            if (distance <= maxDistance) {
+                wordsByDistance.get(distance).addAll(node.words);
+            }
+            for (Map.Entry<Integer, Node> child : node.children.entrySet()) {
+                if (Math.abs(child.getKey() - distance) <= maxDistance) {
+                    nodes.push(child.getValue());
+                }
+            }
+        }
+        List<String> words = new ArrayList<>();
+        wordsByDistance.forEach(words::addAll);
+        return words;
+    }
+
+    static int distance(String a, String b) {
+        return EditDistance.levenshtein(a, b, false);
+    }
+
+    private static final class Node {
+        private final List<String> words = new ArrayList<>(1);
+        private final Map<Integer, Node> children = new HashMap<>(4);
+
+        Node(String word) {
+            words.add(word);
+        }
+
+        String getWord() {
+            return words.get(0);
+        }
+    }
+}
@@ -7,5 +7,6 @@ import javax.swing.*;
 public final class Icons {
     public static class Gutter {
         public static final Icon asterisk = IconLoader.getIcon("/icons/gutter/asterisk.png", Icons.class);
+        public static final Icon asteriskUnused = IconLoader.getDisabledIcon(asterisk);
     }
 }
@@ -0,0 +1,99 @@
+package com.avanza.astrix.intellij.diagnostics;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.actionSystem.ActionManager;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.DefaultActionGroup;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.ui.SimpleToolWindowPanel;
+import com.intellij.ui.JBSplitter;
+import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.ui.ColumnInfo;
+import com.intellij.util.ui.ListTableModel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Operation and cache statistics of {@link AstrixMetrics}, refreshed every second until disposed.
+ */
+class AstrixDiagnosticsPanel extends SimpleToolWindowPanel implements Disposable {
+    private static final int REFRESH_MILLIS = 1000;
+
+    private final ListTableModel<AstrixMetrics.OperationStats> operations = new ListTableModel<>(
+            operationColumn("Operation", AstrixMetrics.OperationStats::getName),
+            operationColumn("Count", AstrixMetrics.OperationStats::getCount),
+            operationColumn("Mean ms", stats -> format(stats.getMeanMillis())),
+            operationColumn("p50 ms", stats -> format(stats.getPercentileMillis(0.5))),
+            operationColumn("p90 ms", stats -> format(stats.getPercentileMillis(0.9))),
+            operationColumn("p99 ms", stats -> format(stats.getPercentileMillis(0.99))),
+            operationColumn("Max ms", stats -> format(stats.getMaxMillis())),
+            operationColumn("Mean size", stats -> format(stats.getMeanSize())),
+            operationColumn("Max size", AstrixMetrics.OperationStats::getMaxSize));
+    private final ListTableModel<AstrixMetrics.CacheStats> caches = new ListTableModel<>(
+            cacheColumn("Cache", AstrixMetrics.CacheStats::getName),
+            cacheColumn("Hits", AstrixMetrics.CacheStats::getHits),
+            cacheColumn("Misses", AstrixMetrics.CacheStats::getMisses),
+            cacheColumn("Hit ratio", stats -> String.format(Locale.ROOT, "%.1f%%", stats.getHitRatio() * 100)));
+    private final Timer timer = new Timer(REFRESH_MILLIS, e -> refresh());
+
+    AstrixDiagnosticsPanel() {
+        super(true, true);
+        JBSplitter splitter = new JBSplitter(true, 0.7f);
+        splitter.setFirstComponent(ScrollPaneFactory.createScrollPane(new JBTable(operations)));
+        splitter.setSecondComponent(ScrollPaneFactory.createScrollPane(new JBTable(caches)));
+        setContent(splitter);
+
+        DefaultActionGroup actions = new DefaultActionGroup();
+        actions.add(new DumbAwareAction("Reset", "Reset astrix statistics", AllIcons.Actions.GC) {
+            @Override
+            public void actionPerformed(@NotNull AnActionEvent e) {
+                AstrixMetrics.getInstance().reset();
+                refresh();
+            }
+        });
+        actions.add(ActionManager.getInstance().getAction("Astrix.ExportTrace"));
+        setToolbar(ActionManager.getInstance().createActionToolbar("AstrixDiagnostics", actions, true).getComponent());
+
+        refresh();
+        timer.start();
+    }
+
+    private void refresh() {
+        AstrixMetrics metrics = AstrixMetrics.getInstance();
+        operations.setItems(metrics.getOperations());
+        caches.setItems(metrics.getCaches());
+    }
+
+    @Override
+    public void dispose() {
+        timer.stop();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static ColumnInfo<AstrixMetrics.OperationStats, Object> operationColumn(String name, Function<AstrixMetrics.OperationStats, Object> value) {
+        return column(name, value);
+    }
+
+    private static ColumnInfo<AstrixMetrics.CacheStats, Object> cacheColumn(String name, Function<AstrixMetrics.CacheStats, Object> value) {
+        return column(name, value);
+    }
+
+    private static <T> ColumnInfo<T, Object> column(String name, Function<T, Object> value) {
+        return new ColumnInfo<>(name) {
+            @Nullable
+            @Override
+            public Object valueOf(T item) {
+                return value.apply(item);
+            }
+        };
+    }
+}
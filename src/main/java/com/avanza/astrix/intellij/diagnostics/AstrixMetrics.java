@@ -0,0 +1,283 @@
+package com.avanza.astrix.intellij.diagnostics;
+
+import com.intellij.openapi.application.ApplicationManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Invocation counts, latency histograms and result sizes of the plugin's operations, hit ratios of its caches and a
+ * ring buffer of the most recent operations for trace export.
+ * <p>
+ * Recording is lock free and cheap enough to stay enabled: latencies are counted in power of two microsecond buckets,
+ * so percentiles are upper bounds within a factor of two.
+ */
+public class AstrixMetrics {
+    public static final String FIND_BEAN_DECLARATIONS = "findBeanDeclarations";
+    public static final String FIND_BEAN_USAGES = "findBeanUsages";
+    public static final String RETRIEVAL_LINE_MARKERS = "retrievalLineMarkers";
+    public static final String DECLARATION_LINE_MARKERS = "declarationLineMarkers";
+    public static final String INSPECTION = "inspection";
+    public static final String SNAPSHOT_INSPECTION = "snapshotInspection";
+    public static final String DECLARATION_TABLE_UPDATE = "declarationTableUpdate";
+
+    public static final String FILE_ANALYSIS_CACHE = "fileAnalysis";
+    public static final String BEAN_LOOKUP_CACHE = "beanLookup";
+    public static final String BEAN_USAGES_CACHE = "beanUsages";
+
+    private static final int LATENCY_BUCKETS = 26;
+    private static final int TRACE_CAPACITY = 16384;
+
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private final Map<String, CacheStats> caches = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<TraceEvent> trace = new AtomicReferenceArray<>(TRACE_CAPACITY);
+    private final AtomicLong traceCount = new AtomicLong();
+
+    public static AstrixMetrics getInstance() {
+        return ApplicationManager.getApplication().getService(AstrixMetrics.class);
+    }
+
+    /**
+     * Starts timing an operation, which is recorded when the returned span is closed.
+     */
+    public Span start(@NotNull String operation) {
+        return new Span(operation, System.nanoTime());
+    }
+
+    /**
+     * Records an operation started at {@code startNanos}, as returned by {@link System#nanoTime()}.
+     */
+    public void record(@NotNull String operation, long startNanos, int size) {
+        long durationNanos = System.nanoTime() - startNanos;
+        operations.computeIfAbsent(operation, OperationStats::new).record(durationNanos, size);
+        Thread thread = Thread.currentThread();
+        long index = traceCount.getAndIncrement();
+        trace.set((int) (index % TRACE_CAPACITY), new TraceEvent(operation, thread.getId(), thread.getName(), startNanos, durationNanos, size));
+    }
+
+    public void cacheAccess(@NotNull String cache, boolean hit) {
+        CacheStats cacheStats = caches.computeIfAbsent(cache, CacheStats::new);
+        cacheStats.lookups.increment();
+        if (!hit) {
+            cacheStats.misses.increment();
+        }
+    }
+
+    /**
+     * Counts a lookup in a cache that records its own misses with {@link #cacheMiss(String)}, when it computes a value.
+     */
+    public void cacheLookup(@NotNull String cache) {
+        caches.computeIfAbsent(cache, CacheStats::new).lookups.increment();
+    }
+
+    public void cacheMiss(@NotNull String cache) {
+        caches.computeIfAbsent(cache, CacheStats::new).misses.increment();
+    }
+
+    public List<OperationStats> getOperations() {
+        return operations.values().stream().sorted(Comparator.comparing(OperationStats::getName)).collect(toList());
+    }
+
+    public List<CacheStats> getCaches() {
+        return caches.values().stream().sorted(Comparator.comparing(CacheStats::getName)).collect(toList());
+    }
+
+    /**
+     * The most recent operations, oldest first.
+     */
+    public List<TraceEvent> getTrace() {
+        long count = traceCount.get();
+        List<TraceEvent> events = new ArrayList<>();
+        for (long index = Math.max(0, count - TRACE_CAPACITY); index < count; index++) {
+            TraceEvent event = trace.get((int) (index % TRACE_CAPACITY));
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        events.sort(Comparator.comparingLong(TraceEvent::getStartNanos));
+        return events;
+    }
+
+    public void reset() {
+        operations.clear();
+        caches.clear();
+        for (int i = 0; i < TRACE_CAPACITY; i++) {
+            trace.set(i, null);
+        }
+        traceCount.set(0);
+    }
+
+    public final class Span implements AutoCloseable {
+        private final String operation;
+        private final long startNanos;
+        private int size;
+
+        private Span(String operation, long startNanos) {
+            this.operation = operation;
+            this.startNanos = startNanos;
+        }
+
+        public void setSize(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public void close() {
+            record(operation, startNanos, size);
+        }
+    }
+
+    public static final class OperationStats {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder totalSize = new LongAdder();
+        private final AtomicLong maxSize = new AtomicLong();
+        private final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKETS);
+
+        private OperationStats(String name) {
+            this.name = name;
+        }
+
+        private void record(long durationNanos, int size) {
+            count.increment();
+            totalNanos.add(durationNanos);
+            maxNanos.accumulateAndGet(durationNanos, Math::max);
+            totalSize.add(size);
+            maxSize.accumulateAndGet(size, Math::max);
+            long micros = TimeUnit.NANOSECONDS.toMicros(durationNanos);
+            int bucket = Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            latencyHistogram.incrementAndGet(bucket);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getMeanMillis() {
+            long count = getCount();
+            return count == 0 ? 0 : totalNanos.sum() / (count * 1e6);
+        }
+
+        public double getMaxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+
+        public double getMeanSize() {
+            long count = getCount();
+            return count == 0 ? 0 : (double) totalSize.sum() / count;
+        }
+
+        public long getMaxSize() {
+            return maxSize.get();
+        }
+
+        /**
+         * The upper bound of the latency bucket holding the percentile, in milliseconds.
+         */
+        public double getPercentileMillis(double percentile) {
+            long count = 0;
+            long[] buckets = new long[LATENCY_BUCKETS];
+            for (int i = 0; i < LATENCY_BUCKETS; i++) {
+                buckets[i] = latencyHistogram.get(i);
+                count += buckets[i];
+            }
+            long rank = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < LATENCY_BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min((1L << i) / 1000.0, getMaxMillis());
+                }
+            }
+            return 0;
+        }
+    }
+
+    public static final class CacheStats {
+        private final String name;
+        private final LongAdder lookups = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        private CacheStats(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getHits() {
+            // a lookup is counted before its miss, so this may briefly be off by the lookups in progress
+            return Math.max(0, lookups.sum() - misses.sum());
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        public double getHitRatio() {
+            long hits = getHits();
+            long total = hits + getMisses();
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    public static final class TraceEvent {
+        private final String name;
+        private final long threadId;
+        private final String threadName;
+        private final long startNanos;
+        private final long durationNanos;
+        private final int size;
+
+        private TraceEvent(String name, long threadId, String threadName, long startNanos, long durationNanos, int size) {
+            this.name = name;
+            this.threadId = threadId;
+            this.threadName = threadName;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+            this.size = size;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getThreadId() {
+            return threadId;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        public long getStartNanos() {
+            return startNanos;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        public int getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.avanza.astrix.intellij.diagnostics;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.intellij.notification.NotificationGroupManager;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports the most recent operations recorded by {@link AstrixMetrics} in the Chrome trace event format, which can be
+ * opened in {@code chrome://tracing} or Perfetto and attached to performance bug reports.
+ */
+public class ExportAstrixTraceAction extends DumbAwareAction {
+
+    public ExportAstrixTraceAction() {
+        super("Export Astrix Trace...", "Export recent astrix operations as a Chrome trace event file", null);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        FileSaverDescriptor descriptor = new FileSaverDescriptor("Export Astrix Trace", "Chrome trace event JSON", "json");
+        VirtualFileWrapper file = FileChooserFactory.getInstance().createSaveFileDialog(descriptor, project).save("astrix-trace.json");
+        if (file == null) {
+            return;
+        }
+        List<AstrixMetrics.TraceEvent> events = AstrixMetrics.getInstance().getTrace();
+        try {
+            writeTrace(events, file.getFile().toPath());
+        } catch (IOException ex) {
+            Messages.showErrorDialog(project, "Unable to write " + file.getFile() + ": " + ex.getMessage(), "Export Astrix Trace");
+            return;
+        }
+        NotificationGroupManager.getInstance()
+                                .getNotificationGroup("Astrix")
+                                .createNotification("Exported " + events.size() + " astrix operations to " + file.getFile(), NotificationType.INFORMATION)
+                                .notify(project);
+    }
+
+    static void writeTrace(List<AstrixMetrics.TraceEvent> events, Path output) throws IOException {
+        long pid = ProcessHandle.current().pid();
+        List<Map<String, Object>> traceEvents = new ArrayList<>();
+        Map<Long, String> threadNames = new LinkedHashMap<>();
+        for (AstrixMetrics.TraceEvent event : events) {
+            threadNames.putIfAbsent(event.getThreadId(), event.getThreadName());
+            Map<String, Object> traceEvent = new LinkedHashMap<>();
+            traceEvent.put("name", event.getName());
+            traceEvent.put("cat", "astrix");
+            traceEvent.put("ph", "X");
+            traceEvent.put("ts", TimeUnit.NANOSECONDS.toMicros(event.getStartNanos()));
+            traceEvent.put("dur", TimeUnit.NANOSECONDS.toMicros(event.getDurationNanos()));
+            traceEvent.put("pid", pid);
+            traceEvent.put("tid", event.getThreadId());
+            traceEvent.put("args", Map.of("size", event.getSize()));
+            traceEvents.add(traceEvent);
+        }
+        threadNames.forEach((threadId, threadName) -> {
+            Map<String, Object> metadata = new LinkedHashMap<>();
+            metadata.put("name", "thread_name");
+            metadata.put("ph", "M");
+            metadata.put("pid", pid);
+            metadata.put("tid", threadId);
+            metadata.put("args", Map.of("name", threadName));
+            traceEvents.add(metadata);
+        });
+
+        Map<String, Object> trace = new LinkedHashMap<>();
+        trace.put("traceEvents", traceEvents);
+        trace.put("displayTimeUnit", "ms");
+        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            gson.toJson(trace, writer);
+        }
+    }
+}
@@ -0,0 +1,583 @@
+package com.avanza.astrix.intellij.graph;
+
+import com.avanza.astrix.intellij.AstrixBeanDescriptor;
+import com.avanza.astrix.intellij.AstrixDependencyGraph;
+import com.avanza.astrix.intellij.Icons;
+import com.intellij.ProjectTopics;
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.actionSystem.ActionManager;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.DefaultActionGroup;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
+import com.intellij.openapi.ui.SimpleToolWindowPanel;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.pom.Navigatable;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.PsiTreeChangeAdapter;
+import com.intellij.psi.PsiTreeChangeEvent;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.ui.ColoredTreeCellRenderer;
+import com.intellij.ui.DoubleClickListener;
+import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.SimpleTextAttributes;
+import com.intellij.ui.TreeSpeedSearch;
+import com.intellij.ui.treeStructure.Tree;
+import com.intellij.util.Alarm;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeWillExpandListener;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static java.util.Collections.emptySet;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * The providing modules and libraries of {@link AstrixDependencyGraph}, with their beans and, once a bean is expanded,
+ * the modules and call sites retrieving it.
+ * <p>
+ * Consumers are searched in the background when a bean is first expanded. Java file and project root changes are
+ * collected and, shortly after the last of them, the providers are reloaded, which is cheap unless the bean
+ * declarations changed. The consumers of an expanded bean are only searched again if a changed file retrieved the bean
+ * before or may retrieve it now, or if the bean declarations or project roots changed. Only the nodes that actually
+ * changed are replaced. The labels of the call sites are computed along with the consumers, so rendering needs no read
+ * action. The panel owns its graph, so the retrievals it has found are released with the tool window content.
+ */
+class AstrixDependencyPanel extends SimpleToolWindowPanel implements Disposable {
+    private static final int REFRESH_DELAY_MILLIS = 300;
+
+    private final Project project;
+    private final AstrixDependencyGraph graph;
+    private final DefaultMutableTreeNode root = new DefaultMutableTreeNode();
+    private final DefaultTreeModel model = new DefaultTreeModel(root);
+    private final Tree tree = new Tree(model);
+    private final Alarm refreshAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+    private final Set<VirtualFile> changedFiles = new HashSet<>();
+    private int reloadRequests = 1;
+    private int appliedReloadRequests;
+    private long declarationsModificationCount = -1;
+    private long rootsModificationCount = -1;
+
+    AstrixDependencyPanel(Project project) {
+        super(true, true);
+        this.project = project;
+        this.graph = new AstrixDependencyGraph(project);
+        tree.setRootVisible(false);
+        tree.setShowsRootHandles(true);
+        tree.setCellRenderer(new NodeRenderer());
+        tree.addTreeWillExpandListener(new TreeWillExpandListener() {
+            @Override
+            public void treeWillExpand(TreeExpansionEvent event) {
+                Object node = event.getPath().getLastPathComponent();
+                if (node instanceof DefaultMutableTreeNode && ((DefaultMutableTreeNode) node).getUserObject() instanceof BeanNode) {
+                    loadConsumers((DefaultMutableTreeNode) node);
+                }
+            }
+
+            @Override
+            public void treeWillCollapse(TreeExpansionEvent event) {
+            }
+        });
+        new DoubleClickListener() {
+            @Override
+            protected boolean onDoubleClick(@NotNull MouseEvent event) {
+                return navigate();
+            }
+        }.installOn(tree);
+        new TreeSpeedSearch(tree);
+        setContent(ScrollPaneFactory.createScrollPane(tree));
+
+        DefaultActionGroup actions = new DefaultActionGroup();
+        actions.add(new DumbAwareAction("Refresh", "Reload astrix dependencies", AllIcons.Actions.Refresh) {
+            @Override
+            public void actionPerformed(@NotNull AnActionEvent e) {
+                reloadRequests++;
+                refresh();
+            }
+        });
+        actions.add(new ExportAstrixDependenciesAction());
+        setToolbar(ActionManager.getInstance().createActionToolbar("AstrixDependencies", actions, true).getComponent());
+
+        PsiManager.getInstance(project).addPsiTreeChangeListener(new ChangeListener(), this);
+        project.getMessageBus().connect(this).subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+            @Override
+            public void rootsChanged(@NotNull ModuleRootEvent event) {
+                scheduleRefresh();
+            }
+        });
+        refresh();
+    }
+
+    private void scheduleRefresh() {
+        refreshAlarm.cancelAllRequests();
+        refreshAlarm.addRequest(this::refresh, REFRESH_DELAY_MILLIS);
+    }
+
+    private void refresh() {
+        Map<AstrixBeanDescriptor, Set<VirtualFile>> expandedBeans = new HashMap<>();
+        for (DefaultMutableTreeNode beanNode : getLoadedBeanNodes()) {
+            BeanNode bean = (BeanNode) beanNode.getUserObject();
+            expandedBeans.computeIfAbsent(bean.bean, key -> new HashSet<>()).addAll(bean.consumerFiles);
+        }
+        // the changed files are only forgotten once applied, as a newer refresh cancels this one
+        Set<VirtualFile> files = new HashSet<>(changedFiles);
+        int requests = reloadRequests;
+        boolean reloadRequested = requests != appliedReloadRequests;
+        long previousDeclarationsModificationCount = declarationsModificationCount;
+        long previousRootsModificationCount = rootsModificationCount;
+        ReadAction.nonBlocking(() -> {
+                      List<AstrixDependencyGraph.Provider> providers = graph.getProviders();
+                      long currentDeclarationsModificationCount = graph.getDeclarationsModificationTracker().getModificationCount();
+                      long currentRootsModificationCount = ProjectRootModificationTracker.getInstance(project).getModificationCount();
+                      boolean reloadAll = reloadRequested ||
+                              currentDeclarationsModificationCount != previousDeclarationsModificationCount ||
+                              currentRootsModificationCount != previousRootsModificationCount;
+                      Map<AstrixBeanDescriptor, BeanConsumers> consumers = new HashMap<>();
+                      expandedBeans.forEach((bean, consumerFiles) -> {
+                          if (reloadAll || intersects(files, consumerFiles) || intersects(files, graph.getRetrievalFiles(bean))) {
+                              consumers.put(bean, findConsumers(bean));
+                          }
+                      });
+                      return new Refresh(providers, consumers, files, requests, currentDeclarationsModificationCount, currentRootsModificationCount);
+                  })
+                  .inSmartMode(project)
+                  .expireWith(this)
+                  .coalesceBy(this)
+                  .finishOnUiThread(ModalityState.NON_MODAL, this::apply)
+                  .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    private void loadConsumers(DefaultMutableTreeNode beanNode) {
+        BeanNode bean = (BeanNode) beanNode.getUserObject();
+        if (bean.loaded) {
+            return;
+        }
+        bean.loaded = true;
+        ReadAction.nonBlocking(() -> findConsumers(bean.bean))
+                  .inSmartMode(project)
+                  .expireWith(this)
+                  .finishOnUiThread(ModalityState.NON_MODAL, consumers -> {
+                      if (beanNode.getParent() != null) {
+                          setConsumers(beanNode, consumers);
+                      }
+                  })
+                  .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    private BeanConsumers findConsumers(AstrixBeanDescriptor bean) {
+        List<ConsumerNode> consumerNodes = new ArrayList<>();
+        Set<VirtualFile> files = new HashSet<>();
+        for (AstrixDependencyGraph.Consumer consumer : graph.getConsumers(bean)) {
+            List<RetrievalNode> retrievalNodes = new ArrayList<>();
+            for (SmartPsiElementPointer<PsiMethodCallExpression> retrieval : consumer.getRetrievals()) {
+                PsiMethodCallExpression expression = retrieval.getElement();
+                if (expression != null) {
+                    files.add(retrieval.getVirtualFile());
+                    retrievalNodes.add(new RetrievalNode(retrieval, getLocation(expression)));
+                }
+            }
+            consumerNodes.add(new ConsumerNode(consumer.getModuleName(), retrievalNodes));
+        }
+        return new BeanConsumers(consumerNodes, files);
+    }
+
+    private void apply(Refresh refresh) {
+        changedFiles.removeAll(refresh.changedFiles);
+        appliedReloadRequests = refresh.reloadRequests;
+        declarationsModificationCount = refresh.declarationsModificationCount;
+        rootsModificationCount = refresh.rootsModificationCount;
+
+        Map<String, DefaultMutableTreeNode> providerNodes = new HashMap<>();
+        for (DefaultMutableTreeNode providerNode : children(root)) {
+            providerNodes.put(((ProviderNode) providerNode.getUserObject()).key(), providerNode);
+        }
+        int index = 0;
+        for (AstrixDependencyGraph.Provider provider : refresh.providers) {
+            ProviderNode providerNode = new ProviderNode(provider.getName(), provider.isLibrary(), provider.getBeans().size());
+            DefaultMutableTreeNode node = providerNodes.remove(providerNode.key());
+            if (node == null) {
+                node = new DefaultMutableTreeNode(providerNode);
+                model.insertNodeInto(node, root, index);
+            } else {
+                if (root.getIndex(node) != index) {
+                    model.removeNodeFromParent(node);
+                    model.insertNodeInto(node, root, index);
+                }
+                node.setUserObject(providerNode);
+                model.nodeChanged(node);
+            }
+            updateBeans(node, provider.getBeans(), refresh.consumers);
+            index++;
+        }
+        providerNodes.values().forEach(model::removeNodeFromParent);
+    }
+
+    private void updateBeans(DefaultMutableTreeNode providerNode, List<AstrixBeanDescriptor> beans, Map<AstrixBeanDescriptor, BeanConsumers> consumers) {
+        Map<AstrixBeanDescriptor, DefaultMutableTreeNode> beanNodes = new HashMap<>();
+        for (DefaultMutableTreeNode beanNode : children(providerNode)) {
+            beanNodes.put(((BeanNode) beanNode.getUserObject()).bean, beanNode);
+        }
+        int index = 0;
+        for (AstrixBeanDescriptor bean : beans) {
+            DefaultMutableTreeNode node = beanNodes.remove(bean);
+            if (node == null) {
+                node = new DefaultMutableTreeNode(new BeanNode(bean));
+                node.add(new DefaultMutableTreeNode(LoadingNode.INSTANCE));
+                model.insertNodeInto(node, providerNode, index);
+            } else {
+                if (providerNode.getIndex(node) != index) {
+                    model.removeNodeFromParent(node);
+                    model.insertNodeInto(node, providerNode, index);
+                }
+                BeanConsumers beanConsumers = consumers.get(bean);
+                if (((BeanNode) node.getUserObject()).loaded && beanConsumers != null) {
+                    setConsumers(node, beanConsumers);
+                }
+            }
+            index++;
+        }
+        beanNodes.values().forEach(model::removeNodeFromParent);
+    }
+
+    private void setConsumers(DefaultMutableTreeNode beanNode, BeanConsumers consumers) {
+        ((BeanNode) beanNode.getUserObject()).consumerFiles = consumers.files;
+        List<Object> current = children(beanNode).stream()
+                                                 .map(DefaultMutableTreeNode::getUserObject)
+                                                 .collect(toList());
+        List<Object> updated = new ArrayList<>(consumers.consumerNodes);
+        if (updated.isEmpty()) {
+            updated.add(NoConsumersNode.INSTANCE);
+        }
+        if (current.equals(updated)) {
+            return;
+        }
+        Set<String> expandedModules = children(beanNode).stream()
+                                                        .filter(node -> tree.isExpanded(new TreePath(node.getPath())))
+                                                        .map(node -> node.getUserObject().toString())
+                                                        .collect(toSet());
+        beanNode.removeAllChildren();
+        for (Object userObject : updated) {
+            DefaultMutableTreeNode node = new DefaultMutableTreeNode(userObject);
+            if (userObject instanceof ConsumerNode) {
+                for (RetrievalNode retrieval : ((ConsumerNode) userObject).retrievals) {
+                    node.add(new DefaultMutableTreeNode(retrieval));
+                }
+            }
+            beanNode.add(node);
+        }
+        model.nodeStructureChanged(beanNode);
+        for (DefaultMutableTreeNode node : children(beanNode)) {
+            if (expandedModules.contains(node.getUserObject().toString())) {
+                tree.expandPath(new TreePath(node.getPath()));
+            }
+        }
+    }
+
+    private List<DefaultMutableTreeNode> getLoadedBeanNodes() {
+        List<DefaultMutableTreeNode> beanNodes = new ArrayList<>();
+        for (DefaultMutableTreeNode providerNode : children(root)) {
+            for (DefaultMutableTreeNode beanNode : children(providerNode)) {
+                if (((BeanNode) beanNode.getUserObject()).loaded) {
+                    beanNodes.add(beanNode);
+                }
+            }
+        }
+        return beanNodes;
+    }
+
+    private boolean navigate() {
+        TreePath path = tree.getSelectionPath();
+        Object node = path == null ? null : path.getLastPathComponent();
+        Object userObject = node instanceof DefaultMutableTreeNode ? ((DefaultMutableTreeNode) node).getUserObject() : null;
+        PsiElement target = null;
+        if (userObject instanceof BeanNode) {
+            AstrixBeanDescriptor bean = ((BeanNode) userObject).bean;
+            target = ReadAction.compute(() -> bean.resolve(GlobalSearchScope.allScope(project), project));
+        } else if (userObject instanceof RetrievalNode) {
+            target = ((RetrievalNode) userObject).retrieval.getElement();
+        }
+        if (target instanceof Navigatable && ((Navigatable) target).canNavigate()) {
+            ((Navigatable) target).navigate(true);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    private static String getLocation(PsiMethodCallExpression retrieval) {
+        PsiMethod method = PsiTreeUtil.getParentOfType(retrieval, PsiMethod.class);
+        String file = retrieval.getContainingFile().getName();
+        return method == null ? file : file + ", " + method.getName() + "()";
+    }
+
+    private static boolean intersects(Set<VirtualFile> changedFiles, Collection<VirtualFile> files) {
+        return !changedFiles.isEmpty() && files.stream().anyMatch(changedFiles::contains);
+    }
+
+    private static List<DefaultMutableTreeNode> children(DefaultMutableTreeNode parent) {
+        List<DefaultMutableTreeNode> children = new ArrayList<>();
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            children.add((DefaultMutableTreeNode) parent.getChildAt(i));
+        }
+        return children;
+    }
+
+    private final class ChangeListener extends PsiTreeChangeAdapter {
+
+        @Override
+        public void childAdded(@NotNull PsiTreeChangeEvent event) {
+            psiChanged(event);
+        }
+
+        @Override
+        public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+            psiChanged(event);
+        }
+
+        @Override
+        public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+            psiChanged(event);
+        }
+
+        @Override
+        public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+            psiChanged(event);
+        }
+
+        @Override
+        public void childMoved(@NotNull PsiTreeChangeEvent event) {
+            psiChanged(event);
+        }
+
+        @Override
+        public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
+            psiChanged(event);
+        }
+
+        private void psiChanged(PsiTreeChangeEvent event) {
+            PsiFile file = event.getFile();
+            PsiElement element = event.getChild() != null ? event.getChild() : event.getElement();
+            if (file == null && element instanceof PsiFile) {
+                file = (PsiFile) element;
+            }
+            VirtualFile virtualFile = file instanceof PsiJavaFile ? file.getVirtualFile() : null;
+            if (virtualFile != null) {
+                changedFiles.add(virtualFile);
+                scheduleRefresh();
+            } else if (file == null && element instanceof PsiDirectory) {
+                // moved packages reach the declarations, whose modification count then reloads all consumers
+                scheduleRefresh();
+            }
+        }
+    }
+
+    private static final class Refresh {
+        private final List<AstrixDependencyGraph.Provider> providers;
+        private final Map<AstrixBeanDescriptor, BeanConsumers> consumers;
+        private final Set<VirtualFile> changedFiles;
+        private final int reloadRequests;
+        private final long declarationsModificationCount;
+        private final long rootsModificationCount;
+
+        Refresh(List<AstrixDependencyGraph.Provider> providers,
+                Map<AstrixBeanDescriptor, BeanConsumers> consumers,
+                Set<VirtualFile> changedFiles,
+                int reloadRequests,
+                long declarationsModificationCount,
+                long rootsModificationCount) {
+            this.providers = providers;
+            this.consumers = consumers;
+            this.changedFiles = changedFiles;
+            this.reloadRequests = reloadRequests;
+            this.declarationsModificationCount = declarationsModificationCount;
+            this.rootsModificationCount = rootsModificationCount;
+        }
+    }
+
+    private static final class BeanConsumers {
+        private final List<ConsumerNode> consumerNodes;
+        private final Set<VirtualFile> files;
+
+        BeanConsumers(List<ConsumerNode> consumerNodes, Set<VirtualFile> files) {
+            this.consumerNodes = consumerNodes;
+            this.files = files;
+        }
+    }
+
+    private static final class ProviderNode {
+        private final String name;
+        private final boolean library;
+        private final int beans;
+
+        ProviderNode(String name, boolean library, int beans) {
+            this.name = name;
+            this.library = library;
+            this.beans = beans;
+        }
+
+        String key() {
+            return (library ? "library:" : "module:") + name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static final class BeanNode {
+        private final AstrixBeanDescriptor bean;
+        private boolean loaded;
+        private Set<VirtualFile> consumerFiles = emptySet();
+
+        BeanNode(AstrixBeanDescriptor bean) {
+            this.bean = bean;
+        }
+
+        @Override
+        public String toString() {
+            return StringUtil.getShortName(bean.getBeanTypeName());
+        }
+    }
+
+    private static final class ConsumerNode {
+        private final String moduleName;
+        private final List<RetrievalNode> retrievals;
+
+        ConsumerNode(String moduleName, List<RetrievalNode> retrievals) {
+            this.moduleName = moduleName;
+            this.retrievals = retrievals;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ConsumerNode)) {
+                return false;
+            }
+            ConsumerNode that = (ConsumerNode) o;
+            return moduleName.equals(that.moduleName) && retrievals.equals(that.retrievals);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(moduleName, retrievals);
+        }
+
+        @Override
+        public String toString() {
+            return moduleName;
+        }
+    }
+
+    private static final class RetrievalNode {
+        private final SmartPsiElementPointer<PsiMethodCallExpression> retrieval;
+        private final String location;
+
+        RetrievalNode(SmartPsiElementPointer<PsiMethodCallExpression> retrieval, String location) {
+            this.retrieval = retrieval;
+            this.location = location;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RetrievalNode)) {
+                return false;
+            }
+            RetrievalNode that = (RetrievalNode) o;
+            return retrieval.equals(that.retrieval) && location.equals(that.location);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(retrieval, location);
+        }
+
+        @Override
+        public String toString() {
+            return location;
+        }
+    }
+
+    private enum LoadingNode {
+        INSTANCE
+    }
+
+    private enum NoConsumersNode {
+        INSTANCE
+    }
+
+    private static final class NodeRenderer extends ColoredTreeCellRenderer {
+
+        @Override
+        public void customizeCellRenderer(@NotNull JTree tree, Object value, boolean selected, boolean expanded, boolean leaf, int row, boolean hasFocus) {
+            Object userObject = value instanceof DefaultMutableTreeNode ? ((DefaultMutableTreeNode) value).getUserObject() : null;
+            if (userObject instanceof ProviderNode) {
+                ProviderNode providerNode = (ProviderNode) userObject;
+                setIcon(providerNode.library ? AllIcons.Nodes.PpLib : AllIcons.Nodes.Module);
+                append(providerNode.name);
+                append("  " + providerNode.beans + (providerNode.beans == 1 ? " bean" : " beans"), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+            } else if (userObject instanceof BeanNode) {
+                AstrixBeanDescriptor bean = ((BeanNode) userObject).bean;
+                setIcon(Icons.Gutter.asterisk);
+                append(StringUtil.getShortName(bean.getBeanTypeName()));
+                if (bean.getQualifier() != null) {
+                    append(" \"" + bean.getQualifier() + "\"", SimpleTextAttributes.GRAY_ITALIC_ATTRIBUTES);
+                }
+                append("  " + (bean.isService() ? "service" : "library") + ", " + bean.getProviderName() + "." + bean.getMethodName() + "()",
+                       SimpleTextAttributes.GRAYED_ATTRIBUTES);
+            } else if (userObject instanceof ConsumerNode) {
+                ConsumerNode consumerNode = (ConsumerNode) userObject;
+                setIcon(AllIcons.Nodes.Module);
+                append(consumerNode.moduleName);
+                int retrievals = consumerNode.retrievals.size();
+                append("  " + retrievals + (retrievals == 1 ? " retrieval" : " retrievals"), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+            } else if (userObject instanceof RetrievalNode) {
+                setIcon(AllIcons.Nodes.Method);
+                append(((RetrievalNode) userObject).location);
+            } else if (userObject == LoadingNode.INSTANCE) {
+                append("Searching retrievals...", SimpleTextAttributes.GRAYED_ATTRIBUTES);
+            } else if (userObject == NoConsumersNode.INSTANCE) {
+                append("Not retrieved in any module", SimpleTextAttributes.GRAYED_ATTRIBUTES);
+            }
+        }
+    }
+}
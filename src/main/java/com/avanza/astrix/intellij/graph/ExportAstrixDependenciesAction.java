@@ -0,0 +1,171 @@
+package com.avanza.astrix.intellij.graph;
+
+import com.avanza.astrix.intellij.AstrixBeanDescriptor;
+import com.avanza.astrix.intellij.AstrixDependencyGraph;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.intellij.icons.AllIcons;
+import com.intellij.notification.NotificationGroupManager;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Exports the providers, beans and consumers of {@link AstrixDependencyGraph} as a Graphviz DOT file, or as JSON when
+ * the file name ends with {@code .json}. Consumers are the modules retrieving a bean, with the number of retrievals.
+ */
+class ExportAstrixDependenciesAction extends DumbAwareAction {
+
+    ExportAstrixDependenciesAction() {
+        super("Export Astrix Dependencies...", "Export astrix providers, beans and consumers as DOT or JSON", AllIcons.ToolbarDecorator.Export);
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        e.getPresentation().setEnabled(e.getProject() != null);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null) {
+            return;
+        }
+        FileSaverDescriptor descriptor = new FileSaverDescriptor("Export Astrix Dependencies", "Graphviz DOT or JSON", "dot", "json");
+        VirtualFileWrapper file = FileChooserFactory.getInstance().createSaveFileDialog(descriptor, project).save("astrix-dependencies.dot");
+        if (file == null) {
+            return;
+        }
+        Path output = file.getFile().toPath();
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Exporting Astrix dependencies", true) {
+            private List<AstrixDependencyGraph.Provider> providers;
+            private Map<AstrixBeanDescriptor, List<AstrixDependencyGraph.Consumer>> consumers;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                AstrixDependencyGraph graph = new AstrixDependencyGraph(project);
+                ReadAction.nonBlocking(() -> {
+                              providers = graph.getProviders();
+                              consumers = graph.getAllConsumers();
+                          })
+                          .inSmartMode(project)
+                          .wrapProgress(indicator)
+                          .executeSynchronously();
+                try {
+                    if (output.toString().endsWith(".json")) {
+                        writeJson(providers, consumers, output);
+                    } else {
+                        writeDot(providers, consumers, output);
+                    }
+                } catch (IOException ex) {
+                    notify(project, "Unable to write " + output + ": " + ex.getMessage(), NotificationType.ERROR);
+                    return;
+                }
+                int beans = providers.stream().mapToInt(provider -> provider.getBeans().size()).sum();
+                notify(project, "Exported " + beans + " astrix beans to " + output, NotificationType.INFORMATION);
+            }
+        });
+    }
+
+    private static void notify(Project project, String content, NotificationType type) {
+        NotificationGroupManager.getInstance()
+                                .getNotificationGroup("Astrix")
+                                .createNotification(content, type)
+                                .notify(project);
+    }
+
+    static void writeDot(List<AstrixDependencyGraph.Provider> providers,
+                         Map<AstrixBeanDescriptor, List<AstrixDependencyGraph.Consumer>> consumers,
+                         Path output) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writer.write("digraph astrix {\n");
+            writer.write("  rankdir=LR;\n");
+            for (AstrixDependencyGraph.Provider provider : providers) {
+                String providerId = quote((provider.isLibrary() ? "library:" : "module:") + provider.getName());
+                writer.write("  " + providerId + " [label=" + quote(provider.getName()) + ", shape=" + (provider.isLibrary() ? "folder" : "box") + "];\n");
+                for (AstrixBeanDescriptor bean : provider.getBeans()) {
+                    String beanId = quote(getBeanId(bean));
+                    writer.write("  " + beanId + " [label=" + quote(getBeanLabel(bean)) + ", shape=ellipse];\n");
+                    writer.write("  " + providerId + " -> " + beanId + ";\n");
+                    for (AstrixDependencyGraph.Consumer consumer : consumers.getOrDefault(bean, emptyList())) {
+                        String consumerId = quote("module:" + consumer.getModuleName());
+                        writer.write("  " + consumerId + " [label=" + quote(consumer.getModuleName()) + ", shape=box];\n");
+                        writer.write("  " + beanId + " -> " + consumerId + " [label=" + quote(String.valueOf(consumer.getRetrievals().size())) + "];\n");
+                    }
+                }
+            }
+            writer.write("}\n");
+        }
+    }
+
+    static void writeJson(List<AstrixDependencyGraph.Provider> providers,
+                          Map<AstrixBeanDescriptor, List<AstrixDependencyGraph.Consumer>> consumers,
+                          Path output) throws IOException {
+        List<Map<String, Object>> providerList = new ArrayList<>();
+        for (AstrixDependencyGraph.Provider provider : providers) {
+            List<Map<String, Object>> beans = new ArrayList<>();
+            for (AstrixBeanDescriptor bean : provider.getBeans()) {
+                List<Map<String, Object>> beanConsumers = new ArrayList<>();
+                for (AstrixDependencyGraph.Consumer consumer : consumers.getOrDefault(bean, emptyList())) {
+                    Map<String, Object> beanConsumer = new LinkedHashMap<>();
+                    beanConsumer.put("module", consumer.getModuleName());
+                    beanConsumer.put("retrievals", consumer.getRetrievals().size());
+                    beanConsumers.add(beanConsumer);
+                }
+                Map<String, Object> beanEntry = new LinkedHashMap<>();
+                beanEntry.put("type", bean.getBeanTypeName());
+                beanEntry.put("qualifier", bean.getQualifier());
+                beanEntry.put("kind", bean.isService() ? "service" : "library");
+                beanEntry.put("provider", bean.getProviderName());
+                beanEntry.put("method", bean.getMethodName());
+                beanEntry.put("consumers", beanConsumers);
+                beans.add(beanEntry);
+            }
+            Map<String, Object> providerEntry = new LinkedHashMap<>();
+            providerEntry.put("name", provider.getName());
+            providerEntry.put("library", provider.isLibrary());
+            providerEntry.put("beans", beans);
+            providerList.add(providerEntry);
+        }
+
+        Gson gson = new GsonBuilder().disableHtmlEscaping().serializeNulls().setPrettyPrinting().create();
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            gson.toJson(Map.of("providers", providerList), writer);
+        }
+    }
+
+    private static String getBeanId(AstrixBeanDescriptor bean) {
+        return "bean:" + bean.getBeanTypeName() + (bean.getQualifier() == null ? "" : "#" + bean.getQualifier());
+    }
+
+    private static String getBeanLabel(AstrixBeanDescriptor bean) {
+        String label = StringUtil.getShortName(bean.getBeanTypeName());
+        return bean.getQualifier() == null ? label : label + " \"" + bean.getQualifier() + "\"";
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
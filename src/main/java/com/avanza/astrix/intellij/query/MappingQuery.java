@@ -23,8 +23,8 @@ import com.intellij.util.Processors;
 import com.intellij.util.Query;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.function.Function;
 
@@ -46,8 +46,7 @@ public class MappingQuery<F, T> implements Query<T> {
 
     @Override
     public boolean forEach(@NotNull final Processor<? super T> consumer) {
-        myOriginal.forEach(new MyProcessor(consumer));
-        return true;
+        return myOriginal.forEach(new MyProcessor(consumer));
     }
 
     @NotNull
@@ -59,7 +58,7 @@ public class MappingQuery<F, T> implements Query<T> {
     @Override
     @NotNull
     public Collection<T> findAll() {
-        List<T> result = new LinkedList<>();
+        List<T> result = new ArrayList<>();
         Processor<T> processor = Processors.cancelableCollectProcessor(result);
         forEach(processor);
         return result;
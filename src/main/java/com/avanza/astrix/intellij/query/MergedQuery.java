@@ -0,0 +1,84 @@
+package com.avanza.astrix.intellij.query;
+
+import com.intellij.concurrency.AsyncFuture;
+import com.intellij.concurrency.AsyncFutureFactory;
+import com.intellij.concurrency.AsyncFutureResult;
+import com.intellij.concurrency.ResultConsumer;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.util.CommonProcessors;
+import com.intellij.util.Processor;
+import com.intellij.util.Processors;
+import com.intellij.util.Query;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Results of several queries, one query after the other. Processing stops as soon as the consumer returns
+ * {@code false}, without starting the remaining queries.
+ */
+public class MergedQuery<T> implements Query<T> {
+    private final List<Query<? extends T>> queries;
+
+    public MergedQuery(@NotNull Collection<? extends Query<? extends T>> queries) {
+        this.queries = new ArrayList<>(queries);
+    }
+
+    @Override
+    public T findFirst() {
+        CommonProcessors.FindFirstProcessor<T> processor = new CommonProcessors.FindFirstProcessor<>();
+        forEach(processor);
+        return processor.getFoundValue();
+    }
+
+    @Override
+    public boolean forEach(@NotNull Processor<? super T> consumer) {
+        for (Query<? extends T> query : queries) {
+            ProgressManager.checkCanceled();
+            if (!query.forEach(consumer)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NotNull
+    @Override
+    public AsyncFuture<Boolean> forEachAsync(@NotNull Processor<? super T> consumer) {
+        AsyncFutureResult<Boolean> result = AsyncFutureFactory.getInstance().createAsyncFutureResult();
+        forEachAsync(0, consumer, result);
+        return result;
+    }
+
+    private void forEachAsync(int index, Processor<? super T> consumer, AsyncFutureResult<Boolean> result) {
+        if (index == queries.size()) {
+            result.set(true);
+            return;
+        }
+        queries.get(index).forEachAsync(consumer).addConsumer(Runnable::run, new ResultConsumer<Boolean>() {
+            @Override
+            public void onSuccess(Boolean value) {
+                if (value) {
+                    forEachAsync(index + 1, consumer, result);
+                } else {
+                    result.set(false);
+                }
+            }
+
+            @Override
+            public void onFailure(@NotNull Throwable t) {
+                result.setException(t);
+            }
+        });
+    }
+
+    @NotNull
+    @Override
+    public Collection<T> findAll() {
+        List<T> result = new ArrayList<>();
+        forEach(Processors.cancelableCollectProcessor(result));
+        return result;
+    }
+}
@@ -4,9 +4,15 @@ import com.intellij.openapi.util.Condition;
 import com.intellij.util.FilteredQuery;
 import com.intellij.util.InstanceofQuery;
 import com.intellij.util.Query;
+import com.intellij.util.UniqueResultsQuery;
 
+import java.util.Collection;
 import java.util.function.Function;
 
+/**
+ * Builds a lazy pipeline on top of a query. Nothing is searched until the resulting query is processed, and a
+ * consumer stopping early stops the underlying search.
+ */
 public class QueryChain<Result> {
     private Query<?> query;
 
@@ -14,6 +20,10 @@ public class QueryChain<Result> {
         this.query = query;
     }
 
+    public static <T> QueryChain<T> merge(Collection<? extends Query<? extends T>> queries) {
+        return new QueryChain<>(new MergedQuery<>(queries));
+    }
+
     @SuppressWarnings("unchecked")
     public <T> QueryChain<T> instanceOf(Class<T> type) {
         query = new InstanceofQuery<>(query, type);
@@ -32,6 +42,12 @@ public class QueryChain<Result> {
         return (QueryChain<T>) this;
     }
 
+    @SuppressWarnings("unchecked")
+    public QueryChain<Result> distinct() {
+        query = new UniqueResultsQuery<>((Query<Result>) query);
+        return this;
+    }
+
     @SuppressWarnings("unchecked")
     public Query<Result> query() {
         return (Query<Result>) query;
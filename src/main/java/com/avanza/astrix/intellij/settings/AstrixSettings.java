@@ -0,0 +1,62 @@
+package com.avanza.astrix.intellij.settings;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.SimpleModificationTracker;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@State(name = "IntelliAstrix", storages = @Storage("intelliAstrix.xml"))
+public class AstrixSettings implements PersistentStateComponent<AstrixSettings.State> {
+    public static final String DEFAULT_REACTIVE_POSTFIX = "Async";
+
+    private final SimpleModificationTracker modificationTracker = new SimpleModificationTracker();
+    private State state = new State();
+
+    public static AstrixSettings getInstance(Project project) {
+        return project.getService(AstrixSettings.class);
+    }
+
+    @NotNull
+    @Override
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public void loadState(@NotNull State state) {
+        this.state = state;
+        modificationTracker.incModificationCount();
+    }
+
+    public List<String> getReactivePostfixes() {
+        return state.reactivePostfixes;
+    }
+
+    public void setReactivePostfixes(List<String> reactivePostfixes) {
+        state.reactivePostfixes = new ArrayList<>(reactivePostfixes);
+        modificationTracker.incModificationCount();
+    }
+
+    public boolean isWarmUpOnStartup() {
+        return state.warmUpOnStartup;
+    }
+
+    public void setWarmUpOnStartup(boolean warmUpOnStartup) {
+        state.warmUpOnStartup = warmUpOnStartup;
+    }
+
+    public ModificationTracker getModificationTracker() {
+        return modificationTracker;
+    }
+
+    public static class State {
+        public List<String> reactivePostfixes = new ArrayList<>(List.of(DEFAULT_REACTIVE_POSTFIX));
+        public boolean warmUpOnStartup = true;
+    }
+}
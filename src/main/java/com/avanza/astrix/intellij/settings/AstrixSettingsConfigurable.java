@@ -0,0 +1,77 @@
+package com.avanza.astrix.intellij.settings;
+
+import com.intellij.openapi.options.Configurable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.ui.components.JBCheckBox;
+import com.intellij.ui.components.JBTextField;
+import com.intellij.util.ui.FormBuilder;
+import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+public class AstrixSettingsConfigurable implements Configurable {
+    private final AstrixSettings settings;
+    private JBTextField reactivePostfixes;
+    private JBCheckBox warmUpOnStartup;
+
+    public AstrixSettingsConfigurable(Project project) {
+        this.settings = AstrixSettings.getInstance(project);
+    }
+
+    @Nls(capitalization = Nls.Capitalization.Title)
+    @Override
+    public String getDisplayName() {
+        return "Astrix";
+    }
+
+    @Nullable
+    @Override
+    public JComponent createComponent() {
+        reactivePostfixes = new JBTextField();
+        warmUpOnStartup = new JBCheckBox("Prepare bean declarations in the background when the project is opened");
+        return FormBuilder.createFormBuilder()
+                          .addLabeledComponent("Reactive bean type postfixes (comma separated):", reactivePostfixes)
+                          .addComponent(warmUpOnStartup)
+                          .addComponentFillVertically(new JPanel(), 0)
+                          .getPanel();
+    }
+
+    @Override
+    public boolean isModified() {
+        return !getReactivePostfixes().equals(settings.getReactivePostfixes()) ||
+                warmUpOnStartup.isSelected() != settings.isWarmUpOnStartup();
+    }
+
+    @Override
+    public void apply() {
+        if (!getReactivePostfixes().equals(settings.getReactivePostfixes())) {
+            settings.setReactivePostfixes(getReactivePostfixes());
+        }
+        settings.setWarmUpOnStartup(warmUpOnStartup.isSelected());
+    }
+
+    @Override
+    public void reset() {
+        reactivePostfixes.setText(String.join(", ", settings.getReactivePostfixes()));
+        warmUpOnStartup.setSelected(settings.isWarmUpOnStartup());
+    }
+
+    @Override
+    public void disposeUIResources() {
+        reactivePostfixes = null;
+        warmUpOnStartup = null;
+    }
+
+    private List<String> getReactivePostfixes() {
+        return StringUtil.split(reactivePostfixes.getText(), ",").stream()
+                         .map(String::trim)
+                         .filter(postfix -> !postfix.isEmpty())
+                         .distinct()
+                         .collect(toList());
+    }
+}
@@ -0,0 +1,20 @@
+package com.avanza.astrix.intellij;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bytes allocated by the current thread, as counted by the JVM.
+ */
+final class AstrixAllocations {
+
+    private AstrixAllocations() {
+    }
+
+    static long measure(Runnable runnable) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        runnable.run();
+        return threadMXBean.getThreadAllocatedBytes(threadId) - start;
+    }
+}
@@ -0,0 +1,209 @@
+package com.avanza.astrix.intellij;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.fixtures.JavaCodeInsightTestFixture;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Writes a synthetic Astrix project into a light fixture: stubs of the Astrix API, and per module a set of bean
+ * interfaces sharing a base interface, qualifier constants, provider classes and consumer classes retrieving beans.
+ * <p>
+ * A light fixture has a single module, so every generated module is a package of its own. Consumers retrieve beans of
+ * their own module and of the next one, plainly, by qualifier constant and through the {@code Async} counterparts of
+ * the first beans of every provider, which are only declared synchronously.
+ */
+class AstrixFixtureProjectGenerator {
+    static final int CALL_SITES_PER_CONSUMER = 10;
+
+    private int modules = 1;
+    private int providersPerModule = 1;
+    private int beansPerProvider = 1;
+    private int qualifiersPerBean;
+    private int asyncPairsPerProvider;
+    private int callSitesPerModule;
+
+    AstrixFixtureProjectGenerator modules(int modules) {
+        this.modules = modules;
+        return this;
+    }
+
+    AstrixFixtureProjectGenerator providersPerModule(int providersPerModule) {
+        this.providersPerModule = providersPerModule;
+        return this;
+    }
+
+    AstrixFixtureProjectGenerator beansPerProvider(int beansPerProvider) {
+        this.beansPerProvider = beansPerProvider;
+        return this;
+    }
+
+    AstrixFixtureProjectGenerator qualifiersPerBean(int qualifiersPerBean) {
+        this.qualifiersPerBean = qualifiersPerBean;
+        return this;
+    }
+
+    AstrixFixtureProjectGenerator asyncPairsPerProvider(int asyncPairsPerProvider) {
+        this.asyncPairsPerProvider = asyncPairsPerProvider;
+        return this;
+    }
+
+    AstrixFixtureProjectGenerator callSitesPerModule(int callSitesPerModule) {
+        this.callSitesPerModule = callSitesPerModule;
+        return this;
+    }
+
+    GeneratedProject generate(JavaCodeInsightTestFixture fixture) {
+        addAstrixApi(fixture);
+        List<PsiFile> providerFiles = new ArrayList<>();
+        List<PsiFile> consumerFiles = new ArrayList<>();
+        for (int module = 0; module < modules; module++) {
+            addModuleApi(fixture, module);
+            for (int provider = 0; provider < providersPerModule; provider++) {
+                providerFiles.add(addProvider(fixture, module, provider));
+            }
+            for (int consumer = 0; consumer * CALL_SITES_PER_CONSUMER < callSitesPerModule; consumer++) {
+                int callSites = Math.min(CALL_SITES_PER_CONSUMER, callSitesPerModule - consumer * CALL_SITES_PER_CONSUMER);
+                consumerFiles.add(addConsumer(fixture, module, consumer, callSites));
+            }
+        }
+        return new GeneratedProject(providerFiles, consumerFiles);
+    }
+
+    static void addAstrixApi(JavaCodeInsightTestFixture fixture) {
+        fixture.addClass("package com.avanza.astrix.provider.core;\n" +
+                                 "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n" +
+                                 "public @interface AstrixApiProvider {}");
+        fixture.addClass("package com.avanza.astrix.provider.core;\n" +
+                                 "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n" +
+                                 "public @interface Service {}");
+        fixture.addClass("package com.avanza.astrix.provider.core;\n" +
+                                 "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n" +
+                                 "public @interface Library {}");
+        fixture.addClass("package com.avanza.astrix.provider.core;\n" +
+                                 "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n" +
+                                 "public @interface AstrixQualifier { String value(); }");
+        fixture.addClass("package com.avanza.astrix.context;\n" +
+                                 "public interface Astrix {\n" +
+                                 "    <T> T getBean(Class<T> beanType);\n" +
+                                 "    <T> T getBean(Class<T> beanType, String qualifier);\n" +
+                                 "    <T> T waitForBean(Class<T> beanType, long timeoutMillis) throws InterruptedException;\n" +
+                                 "    <T> T waitForBean(Class<T> beanType, String qualifier, long timeoutMillis) throws InterruptedException;\n" +
+                                 "}");
+    }
+
+    private void addModuleApi(JavaCodeInsightTestFixture fixture, int module) {
+        String packageName = getPackageName(module);
+        fixture.addFileToProject(getPath(module, getApiName(module)), "package " + packageName + ";\n" +
+                "public interface " + getApiName(module) + " {}");
+
+        StringBuilder qualifiers = new StringBuilder("package " + packageName + ";\n" +
+                                                             "public final class " + getQualifiersName(module) + " {\n");
+        for (int qualifier = 0; qualifier < qualifiersPerBean; qualifier++) {
+            qualifiers.append("    public static final String Q").append(qualifier).append(" = \"m").append(module).append("-q").append(qualifier).append("\";\n");
+        }
+        qualifiers.append("}");
+        fixture.addFileToProject(getPath(module, getQualifiersName(module)), qualifiers.toString());
+
+        for (int provider = 0; provider < providersPerModule; provider++) {
+            for (int bean = 0; bean < beansPerProvider; bean++) {
+                String beanName = getBeanName(module, provider, bean);
+                fixture.addFileToProject(getPath(module, beanName), "package " + packageName + ";\n" +
+                        "public interface " + beanName + " extends " + getApiName(module) + " {}");
+                if (bean < asyncPairsPerProvider) {
+                    fixture.addFileToProject(getPath(module, beanName + "Async"), "package " + packageName + ";\n" +
+                            "public interface " + beanName + "Async {}");
+                }
+            }
+        }
+    }
+
+    private PsiFile addProvider(JavaCodeInsightTestFixture fixture, int module, int provider) {
+        String providerName = "M" + module + "Provider" + provider;
+        StringBuilder text = new StringBuilder("package " + getPackageName(module) + ";\n" +
+                                                       "import com.avanza.astrix.provider.core.*;\n" +
+                                                       "@AstrixApiProvider\n" +
+                                                       "public interface " + providerName + " {\n");
+        for (int bean = 0; bean < beansPerProvider; bean++) {
+            String beanName = getBeanName(module, provider, bean);
+            String methodName = "bean" + provider + "_" + bean;
+            String kind = bean % 2 == 0 ? "@Service " : "@Library ";
+            text.append("    ").append(kind).append(beanName).append(" ").append(methodName).append("();\n");
+            for (int qualifier = 0; qualifier < qualifiersPerBean; qualifier++) {
+                text.append("    @AstrixQualifier(").append(getQualifiersName(module)).append(".Q").append(qualifier).append(") ").append(kind)
+                    .append(beanName).append(" ").append(methodName).append("q").append(qualifier).append("();\n");
+            }
+        }
+        text.append("}");
+        return fixture.addFileToProject(getPath(module, providerName), text.toString());
+    }
+
+    private PsiFile addConsumer(JavaCodeInsightTestFixture fixture, int module, int consumer, int callSites) {
+        String consumerName = "M" + module + "Consumer" + consumer;
+        StringBuilder text = new StringBuilder("package " + getPackageName(module) + ";\n" +
+                                                       "import com.avanza.astrix.context.Astrix;\n" +
+                                                       "public class " + consumerName + " {\n" +
+                                                       "    private Astrix astrix;\n" +
+                                                       "    void retrieve() throws InterruptedException {\n");
+        for (int callSite = 0; callSite < callSites; callSite++) {
+            int index = consumer * CALL_SITES_PER_CONSUMER + callSite;
+            // every other call site retrieves a bean of the next module
+            int beanModule = index % 2 == 0 ? module : (module + 1) % modules;
+            int provider = index / 2 % providersPerModule;
+            int bean = index / 2 / providersPerModule % beansPerProvider;
+            String beanType = getPackageName(beanModule) + "." + getBeanName(beanModule, provider, bean);
+            if (index % 4 == 1 && qualifiersPerBean > 0) {
+                String qualifier = getPackageName(beanModule) + "." + getQualifiersName(beanModule) + ".Q" + (index % qualifiersPerBean);
+                text.append("        astrix.getBean(").append(beanType).append(".class, ").append(qualifier).append(");\n");
+            } else if (index % 4 == 3 && bean < asyncPairsPerProvider) {
+                text.append("        astrix.waitForBean(").append(beanType).append("Async.class, 1000L);\n");
+            } else {
+                text.append("        astrix.getBean(").append(beanType).append(".class);\n");
+            }
+        }
+        text.append("    }\n" +
+                            "}");
+        return fixture.addFileToProject(getPath(module, consumerName), text.toString());
+    }
+
+    private static String getPackageName(int module) {
+        return "com.example.m" + module;
+    }
+
+    private static String getPath(int module, String className) {
+        return getPackageName(module).replace('.', '/') + "/" + className + ".java";
+    }
+
+    private static String getApiName(int module) {
+        return "M" + module + "Api";
+    }
+
+    private static String getQualifiersName(int module) {
+        return "M" + module + "Qualifiers";
+    }
+
+    private static String getBeanName(int module, int provider, int bean) {
+        return "M" + module + "P" + provider + "Bean" + bean;
+    }
+
+    static final class GeneratedProject {
+        private final List<PsiFile> providerFiles;
+        private final List<PsiFile> consumerFiles;
+
+        GeneratedProject(List<PsiFile> providerFiles, List<PsiFile> consumerFiles) {
+            this.providerFiles = providerFiles;
+            this.consumerFiles = consumerFiles;
+        }
+
+        List<PsiFile> getProviderFiles() {
+            return unmodifiableList(providerFiles);
+        }
+
+        List<PsiFile> getConsumerFiles() {
+            return unmodifiableList(consumerFiles);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.avanza.astrix.intellij;
+
+import com.intellij.codeInsight.daemon.LineMarkerInfo;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiExpressionList;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.SyntaxTraverser;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static com.avanza.astrix.intellij.AstrixContextUtility.findBeanDeclarations;
+import static com.avanza.astrix.intellij.AstrixContextUtility.findBeanUsages;
+
+/**
+ * Time and allocation budgets for the hot paths on generated projects of 5, 10 and 20 modules, each module with 50
+ * bean types, 150 bean declarations and 200 retrievals. The budgets grow linearly with the number of modules, so a
+ * change that makes an operation scale worse fails on the larger projects first. Time budgets are scaled to the speed
+ * of the machine by the platform performance test utilities.
+ */
+public class AstrixPerformanceTest extends LightJavaCodeInsightFixtureTestCase {
+    private static final int PROVIDERS_PER_MODULE = 5;
+    private static final int BEANS_PER_PROVIDER = 10;
+    private static final int QUALIFIERS_PER_BEAN = 2;
+    private static final int CALL_SITES_PER_MODULE = 200;
+    private static final long LOOKUP_BYTES_PER_DECLARATION = 64 * 1024;
+    private static final long MATCH_BYTES_PER_RETRIEVAL = 4 * 1024;
+
+    public void testDeclarationTableAndBeanLookupWith5Modules() {
+        checkDeclarationTableAndBeanLookup(5);
+    }
+
+    public void testDeclarationTableAndBeanLookupWith10Modules() {
+        checkDeclarationTableAndBeanLookup(10);
+    }
+
+    public void testDeclarationTableAndBeanLookupWith20Modules() {
+        checkDeclarationTableAndBeanLookup(20);
+    }
+
+    public void testFindBeanUsagesWith5Modules() {
+        checkFindBeanUsages(5);
+    }
+
+    public void testFindBeanUsagesWith10Modules() {
+        checkFindBeanUsages(10);
+    }
+
+    public void testFindBeanUsagesWith20Modules() {
+        checkFindBeanUsages(20);
+    }
+
+    public void testRetrievalLineMarkersWith5Modules() {
+        checkRetrievalLineMarkers(5);
+    }
+
+    public void testRetrievalLineMarkersWith20Modules() {
+        checkRetrievalLineMarkers(20);
+    }
+
+    public void testDeclarationLineMarkersWith5Modules() {
+        checkDeclarationLineMarkers(5);
+    }
+
+    public void testDeclarationLineMarkersWith20Modules() {
+        checkDeclarationLineMarkers(20);
+    }
+
+    private void checkDeclarationTableAndBeanLookup(int modules) {
+        AstrixFixtureProjectGenerator.GeneratedProject generatedProject = generate(modules);
+        Project project = getProject();
+        AstrixBeanDeclarationTable declarationTable = AstrixBeanDeclarationCache.getInstance(project).getDeclarationTable();
+        GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+        int declarations = modules * PROVIDERS_PER_MODULE * BEANS_PER_PROVIDER * (1 + QUALIFIERS_PER_BEAN);
+
+        long bytes = AstrixAllocations.measure(() -> {
+            declarationTable.invalidate();
+            declarationTable.update();
+            AstrixBeanLookup.create(declarationTable, scope, project);
+        });
+        assertTrue("allocated " + bytes / declarations + " bytes per declaration", bytes <= declarations * LOOKUP_BYTES_PER_DECLARATION);
+
+        PlatformTestUtil.startPerformanceTest("declaration table and bean lookup, " + modules + " modules", 150 * modules, () -> {
+            declarationTable.invalidate();
+            declarationTable.update();
+            AstrixBeanLookup beanLookup = AstrixBeanLookup.create(declarationTable, scope, project);
+            assertSize(modules * PROVIDERS_PER_MODULE * BEANS_PER_PROVIDER, beanLookup.findBeanTypeNamesByInitial(""));
+        }).assertTiming();
+
+        AstrixBeanLookup beanLookup = AstrixBeanLookup.create(declarationTable, scope, project);
+        List<PsiExpressionList> argumentLists = new ArrayList<>();
+        for (PsiFile consumerFile : generatedProject.getConsumerFiles()) {
+            PsiTreeUtil.findChildrenOfType(consumerFile, PsiMethodCallExpression.class).forEach(call -> argumentLists.add(call.getArgumentList()));
+        }
+        assertSize(modules * CALL_SITES_PER_MODULE, argumentLists);
+        long matchBytes = AstrixAllocations.measure(() -> argumentLists.forEach(argumentList -> assertNotEmpty(beanLookup.findBeanDeclarations(argumentList))));
+        assertTrue("allocated " + matchBytes / argumentLists.size() + " bytes per retrieval", matchBytes <= argumentLists.size() * MATCH_BYTES_PER_RETRIEVAL);
+    }
+
+    private void checkFindBeanUsages(int modules) {
+        AstrixFixtureProjectGenerator.GeneratedProject generatedProject = generate(modules);
+        List<PsiMethod> methods = new ArrayList<>();
+        for (PsiFile providerFile : generatedProject.getProviderFiles().subList(0, PROVIDERS_PER_MODULE)) {
+            methods.addAll(findBeanDeclarations(providerFile));
+        }
+        assertSize(PROVIDERS_PER_MODULE * BEANS_PER_PROVIDER * (1 + QUALIFIERS_PER_BEAN), methods);
+        assertNotEmpty(findBeanUsages(methods.get(0)).findAll());
+
+        PsiManager psiManager = PsiManager.getInstance(getProject());
+        PlatformTestUtil.startPerformanceTest("findBeanUsages, " + modules + " modules", 300 * modules, () -> {
+            for (PsiMethod method : methods) {
+                findBeanUsages(method).findAll();
+            }
+        }).setup(psiManager::dropPsiCaches).assertTiming();
+    }
+
+    private void checkRetrievalLineMarkers(int modules) {
+        PsiFile consumerFile = generate(modules).getConsumerFiles().get(0);
+        List<PsiElement> elements = SyntaxTraverser.psiTraverser(consumerFile).toList();
+        AstrixContextGetterLineMarker lineMarker = new AstrixContextGetterLineMarker();
+
+        PsiManager psiManager = PsiManager.getInstance(getProject());
+        PlatformTestUtil.startPerformanceTest("retrieval line markers, " + modules + " modules", 100 * modules, () -> {
+            Collection<LineMarkerInfo<?>> markers = new ArrayList<>();
+            lineMarker.collectSlowLineMarkers(elements, markers);
+            assertSize(AstrixFixtureProjectGenerator.CALL_SITES_PER_CONSUMER, markers);
+        }).setup(psiManager::dropPsiCaches).assertTiming();
+    }
+
+    private void checkDeclarationLineMarkers(int modules) {
+        PsiFile providerFile = generate(modules).getProviderFiles().get(0);
+        List<PsiElement> elements = SyntaxTraverser.psiTraverser(providerFile).toList();
+        AstrixBeanDeclarationLineMarker lineMarker = new AstrixBeanDeclarationLineMarker();
+
+        PsiManager psiManager = PsiManager.getInstance(getProject());
+        PlatformTestUtil.startPerformanceTest("declaration line markers, " + modules + " modules", 100 * modules, () -> {
+            Collection<LineMarkerInfo<?>> markers = new ArrayList<>();
+            lineMarker.collectSlowLineMarkers(elements, markers);
+            assertSize(BEANS_PER_PROVIDER * (1 + QUALIFIERS_PER_BEAN), markers);
+        }).setup(psiManager::dropPsiCaches).assertTiming();
+    }
+
+    private AstrixFixtureProjectGenerator.GeneratedProject generate(int modules) {
+        return new AstrixFixtureProjectGenerator().modules(modules)
+                                                  .providersPerModule(PROVIDERS_PER_MODULE)
+                                                  .beansPerProvider(BEANS_PER_PROVIDER)
+                                                  .qualifiersPerBean(QUALIFIERS_PER_BEAN)
+                                                  .asyncPairsPerProvider(3)
+                                                  .callSitesPerModule(CALL_SITES_PER_MODULE)
+                                                  .generate(myFixture);
+    }
+}